@@ -2,8 +2,10 @@ package com.example.gitsync;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class GitLogSyncApplication {
     public static void main(String[] args) {
         SpringApplication.run(GitLogSyncApplication.class, args);
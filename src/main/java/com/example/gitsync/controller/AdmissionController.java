@@ -0,0 +1,24 @@
+package com.example.gitsync.controller;
+
+import com.example.gitsync.service.AdmissionControl;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 准入控制狀態：執行中 / 排隊中的請求數與拒絕次數
+ */
+@RestController
+@RequestMapping("/api/admission")
+public class AdmissionController {
+    private final AdmissionControl admissionControl;
+
+    public AdmissionController(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @GetMapping
+    public AdmissionControl.Stats stats() {
+        return admissionControl.stats();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.gitsync.controller;
+
+import com.example.gitsync.service.MultiRepoReportSource;
+import com.example.gitsync.service.SingleFlight;
+import com.example.gitsync.service.SyncJobService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 請求合併統計：實際執行次數、併入執行中請求的次數與目前執行中的數量
+ */
+@RestController
+@RequestMapping("/api/coalescing")
+public class CoalescingController {
+    private final MultiRepoReportSource multiRepoReportSource;
+    private final SyncJobService syncJobService;
+
+    public CoalescingController(MultiRepoReportSource multiRepoReportSource, SyncJobService syncJobService) {
+        this.multiRepoReportSource = multiRepoReportSource;
+        this.syncJobService = syncJobService;
+    }
+
+    @GetMapping
+    public Map<String, SingleFlight.Stats> stats() {
+        Map<String, SingleFlight.Stats> stats = new LinkedHashMap<>();
+        stats.put("report", multiRepoReportSource.coalescingStats());
+        stats.put("branchSync", syncJobService.coalescingStats());
+        return stats;
+    }
+}
@@ -1,34 +1,83 @@
 package com.example.gitsync.controller;
 
-import org.eclipse.jgit.revwalk.RevCommit;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.util.HtmlUtils;
+import com.example.gitsync.service.AdmissionControl;
+import com.example.gitsync.service.AdmissionRejectedException;
+import com.example.gitsync.service.BranchChange;
+import com.example.gitsync.service.CommitTable;
+import com.example.gitsync.service.BranchSelector;
 import com.example.gitsync.service.GitService;
 import com.example.gitsync.service.HtmlReportGenerator;
+import com.example.gitsync.service.MultiRepoReportSource;
+import com.example.gitsync.service.ReportCache;
+import com.example.gitsync.service.ReportCacheKeys;
+import com.example.gitsync.service.SyncJobService;
+import com.example.gitsync.service.WalkBudgetExceededException;
+import com.example.gitsync.service.WorkHourCalculator;
 import com.example.gitsync.repository.GitCommitRepository;
-import com.example.gitsync.model.GitCommit;
+import com.example.gitsync.model.SyncJob;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/git")
 public class GitController {    
+    private static final int STREAM_FLUSH_ROWS = 200;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final GitService gitService;
     private final HtmlReportGenerator htmlReportGenerator;
     private final GitCommitRepository gitCommitRepository;
+    private final SyncJobService syncJobService;
+    private final MultiRepoReportSource multiRepoReportSource;
+    private final ReportCache reportCache;
+    private final ReportCacheKeys reportCacheKeys;
+    private final AdmissionControl admissionControl;
+    private final WorkHourCalculator workHourCalculator;
+    private final ObjectMapper objectMapper;
 
-    public GitController(GitService gitService, HtmlReportGenerator htmlReportGenerator,GitCommitRepository gitCommitRepository) {
+    public GitController(GitService gitService, HtmlReportGenerator htmlReportGenerator,GitCommitRepository gitCommitRepository,
+                         SyncJobService syncJobService, MultiRepoReportSource multiRepoReportSource,
+                         ReportCache reportCache, ReportCacheKeys reportCacheKeys, AdmissionControl admissionControl,
+                         WorkHourCalculator workHourCalculator, ObjectMapper objectMapper) {
         this.gitService = gitService;
         this.htmlReportGenerator = htmlReportGenerator;
         this.gitCommitRepository = gitCommitRepository;
+        this.syncJobService = syncJobService;
+        this.multiRepoReportSource = multiRepoReportSource;
+        this.reportCache = reportCache;
+        this.reportCacheKeys = reportCacheKeys;
+        this.admissionControl = admissionControl;
+        this.workHourCalculator = workHourCalculator;
+        this.objectMapper = objectMapper;
     }
 
 
+    /**
+     * 提交背景同步工作並立即回傳工作 id，進度請查詢 /api/sync/jobs/{id}
+     */
     @PostMapping("/sync")
     public ResponseEntity<String> syncGitCommits(
             @RequestParam String repoUrl,
@@ -36,88 +85,264 @@ public class GitController {
             @RequestParam String password,
                                                      @RequestParam String branch) {
         try {
-            List<GitCommit> commits = gitService.fetchCommits(repoUrl, username, password);
-            gitCommitRepository.saveAll(commits);
-            List<RevCommit> rcommits = gitService.fetchAllCommits(repoUrl, username, password, branch);
-            gitService.syncCommitsToDatabase(rcommits);
-            return ResponseEntity.ok("Git commits synced successfully!");
+            SyncJob job = syncJobService.submitCommitSync(repoUrl, username, password, branch);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/sync/jobs/" + job.getJobId()))
+                    .body("Git commits sync job submitted: " + job.getJobId());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Sync job queue is full, please retry later");
+        }
+    }
+
+    /**
+     * 以 ls-remote 檢查遠端分支是否有上次同步後的新 commit，不 fetch 任何物件
+     */
+    @GetMapping("/changed")
+    public ResponseEntity<Map<String, Object>> checkChanged(
+            @RequestParam String repoUrl,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String password,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime effdate,
+            @RequestParam(name = "branches", required = false) List<String> branches) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("repoUrl", repoUrl);
+        try {
+            List<BranchChange> changes = gitService.detectChanges(repoUrl, username, password, effdate, branches);
+            body.put("changed", changes.stream().anyMatch(BranchChange::needsSync));
+            body.put("branches", changes);
+            return ResponseEntity.ok(body);
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Error syncing Git commits: " + e.getMessage());
+            e.printStackTrace();
+            body.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(body);
         }
     }
 
+    /**
+     * 以 NDJSON（每行一筆 JSON）串流輸出 commit：直接由 RevWalk 逐筆寫出，不先收集成清單，
+     * 用戶端讀取較慢時寫入會阻塞、走訪隨之暫停，輸出緩衝大小固定；走訪的 commit 數受單次請求上限限制
+     * （RevWalk 會保留已走訪 commit 的物件），超過時最後一行為錯誤訊息。
+     * 每行欄位：hash、author、time（commit time，epoch 秒）、branch、message（第一行）、workingHours；
+     * 走訪中發生錯誤時最後一行為 {"error": ...}。
+     * @param effdate 起始時間，不填表示完整歷史
+     * @param expdate 結束時間，不填表示不限制
+     * @param branches 指定的分支，不填表示全部；每個 commit 只輸出一次，歸屬於依指定順序第一個可到達它的分支
+     */
+    @GetMapping(value = "/commits/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> streamCommits(
+            @RequestParam String repoUrl,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String password,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime effdate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime expdate,
+            @RequestParam(name = "branches", required = false) List<String> branches) {
+        // 在送出回應前取得名額，才能回 429 / 503；名額於串流結束（或用戶端中斷）後釋放
+        AdmissionControl.Ticket ticket = admissionControl.admit();
+        StreamingResponseBody body = out -> {
+            ObjectWriter writer = objectMapper.writerFor(Map.class);
+            int[] pending = {0};
+            boolean[] disconnected = {false};
+            try {
+                gitService.streamCommits(repoUrl, username, password, effdate, expdate, branches, admissionControl.newBudget(), (commit, branch) -> {
+                    LocalDateTime commitDateTime = Instant.ofEpochSecond(commit.getCommitTime())
+                            .atZone(ZoneId.systemDefault())
+                            .toLocalDateTime();
+                    Map<String, Object> line = new LinkedHashMap<>();
+                    line.put("hash", commit.getName());
+                    line.put("author", commit.getAuthorIdent().getName());
+                    line.put("time", commit.getCommitTime());
+                    line.put("branch", BranchSelector.simpleBranchName(branch));
+                    line.put("message", commit.getShortMessage());
+                    line.put("workingHours", workHourCalculator.calculateHours(commitDateTime));
+                    try {
+                        out.write(writer.writeValueAsBytes(line));
+                        out.write('\n');
+                        if (++pending[0] >= STREAM_FLUSH_ROWS) {
+                            out.flush();
+                            pending[0] = 0;
+                        }
+                    } catch (IOException e) {
+                        disconnected[0] = true;
+                        throw e;
+                    }
+                });
+            } catch (Exception e) {
+                if (disconnected[0]) {
+                    // 用戶端已中斷連線，走訪已停止，不再寫入
+                    return;
+                }
+                e.printStackTrace();
+                out.write(writer.writeValueAsBytes(Collections.singletonMap("error", String.valueOf(e.getMessage()))));
+                out.write('\n');
+            } finally {
+                ticket.close();
+            }
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
     @GetMapping(value = "/report", produces = MediaType.TEXT_HTML_VALUE)
-    public ResponseEntity<String> getWorkHourReport(@RequestParam String repoUrl,
+    public ResponseEntity<StreamingResponseBody> getWorkHourReport(@RequestParam String repoUrl,
                                                      @RequestParam String username,
                                                      @RequestParam String password,
                                                      @RequestParam String branch
-                                                     ) {
-        try {
-            System.out.println(repoUrl);
-            System.out.println(username);
-            System.out.println(password);
-            List<RevCommit> commits = gitService.fetchAllCommits(repoUrl, username, password, branch);
-            String reportHtml = htmlReportGenerator.generate(commits);
-            return ResponseEntity.ok(reportHtml);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(500).body("<h1>產生報告失敗</h1><p>" + e.getMessage() + "</p>");
-        }
+                                                     ) throws WalkBudgetExceededException {
+        System.out.println(repoUrl);
+        // 完整歷史：保留的 commit 數與大小受單次請求上限限制；名額只在 fetch 與走訪期間佔用
+        return streamHtml(null, () -> {
+            AdmissionControl.Ticket ticket = admissionControl.admit();
+            try {
+                return CommitTable.fromRevCommits(gitService.fetchAllCommits(repoUrl, username, password, branch, admissionControl.newBudget()));
+            } finally {
+                ticket.close();
+            }
+        }, (commits, out) -> {
+            htmlReportGenerator.writeReportHeader(out);
+            htmlReportGenerator.writeReportRows(commits, out);
+        });
     }
 
     @GetMapping(value = "/ctbc/report", produces = MediaType.TEXT_HTML_VALUE)
-    public ResponseEntity<String> getCtbcWorkHourReport(
+    public ResponseEntity<StreamingResponseBody> getCtbcWorkHourReport(
             @RequestParam String repoUrl,
             @RequestParam String username,
             @RequestParam String password,
-            @RequestParam String effdate,
-            @RequestParam String expdate
-    ) {
-        try {
-            System.out.println(repoUrl);
-            System.out.println(username);
-            System.out.println(password);
-            System.out.println(effdate);
-            System.out.println(expdate);
-            // 解析 effdate, expdate 為 LocalDateTime
-            java.time.LocalDateTime eff = java.time.LocalDateTime.parse(effdate);
-            java.time.LocalDateTime exp = java.time.LocalDateTime.parse(expdate);
-            Map<String, List<RevCommit>> branchCommitsMap = gitService.fetchCommitsByDateRange(repoUrl, username, password, eff, exp, null);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime effdate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime expdate
+    ) throws WalkBudgetExceededException {
+        System.out.println(repoUrl);
+        System.out.println(effdate);
+        System.out.println(expdate);
+        String cacheKey = reportCacheKeys.resolve("clone", repoUrl, username, password, effdate, expdate, null, ReportCacheKeys.FORMAT_CTBC_HTML);
+        // 准入名額於實際 fetch 倉庫時取得（見 MultiRepoReportSource）
+        return streamHtml(cacheKey, () -> multiRepoReportSource.fetch("clone", repoUrl, username, password, effdate, expdate, null,
+                admissionControl.newBudget()), (commits, out) -> {
+            htmlReportGenerator.writeCtbcReportHeader(out);
             // 生成 CTBC 專案工時報告
-            String reportHtml = htmlReportGenerator.generateCtbcReport(branchCommitsMap);
-            return ResponseEntity.ok(reportHtml);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return ResponseEntity.status(500).body("<h1>產生報告失敗</h1><p>" + e.getMessage() + "</p>");
-        }
+            htmlReportGenerator.writeCtbcReportRows(commits, out);
+        });
     }
 
+    /**
+     * @param repoUrl 一個或多個倉庫網址（可重複參數或以逗號分隔）；多個倉庫時平行取得並合併，報表多一欄倉庫
+     */
     @PostMapping(value = "/ctbc/report", produces = MediaType.TEXT_HTML_VALUE)
-    public ResponseEntity<String> postCtbcWorkHourReport(
-            @RequestParam String repoUrl,
+    public ResponseEntity<StreamingResponseBody> postCtbcWorkHourReport(
+            @RequestParam List<String> repoUrl,
             @RequestParam String username,
             @RequestParam String password,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime effdate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime expdate,
-            @RequestParam(name = "branches", required = false) List<String> branches
-    ) {
-        try {
-            System.out.println(repoUrl);
-            System.out.println(username);
-            System.out.println(effdate);
-            System.out.println(expdate);
-            // 解析 effdate, expdate 為 LocalDateTime
-            java.time.LocalDateTime eff = effdate;
-            java.time.LocalDateTime exp = expdate;
-            Map<String, List<RevCommit>> branchCommitsMap = gitService.fetchCommitsByDateRange(repoUrl, username, password, eff, exp, branches);
+            @RequestParam(name = "branches", required = false) List<String> branches,
+            @RequestParam(name = "source", defaultValue = "clone") String source
+    ) throws WalkBudgetExceededException {
+        System.out.println(repoUrl);
+        System.out.println(effdate);
+        System.out.println(expdate);
+        List<String> repoUrls = MultiRepoReportSource.normalizeRepoUrls(repoUrl);
+        String cacheKey = reportCacheKeys.resolve(source, repoUrls, username, password, effdate, expdate, branches, ReportCacheKeys.FORMAT_CTBC_HTML);
+        // clone 來源每個倉庫 fetch 時各取得准入名額，所有倉庫共用此請求的走訪上限
+        // gitlab 來源的 password 欄位填 Personal Access Token；db 來源讀取已同步的 WorkLog
+        return streamHtml(cacheKey, () -> multiRepoReportSource.fetchAll(source, repoUrls, username, password, effdate, expdate, branches,
+                admissionControl.newBudget()), (commits, out) -> {
+            htmlReportGenerator.writeCtbcReportHeader(out, repoUrls.size() > 1);
             // 生成 CTBC 專案工時報告
-            String reportHtml = htmlReportGenerator.generateCtbcReport(branchCommitsMap);
-            return ResponseEntity.ok(reportHtml);
+            htmlReportGenerator.writeCtbcReportRows(commits, out);
+        });
+    }
+
+    /**
+     * 先取得 commit 表再以 chunked 方式回傳報告，只有產生 HTML 的部分串流輸出：
+     * 准入拒絕（429 / 503，帶 Retry-After）與超過走訪上限（413）都在送出回應前回報，其他取得資料的錯誤回 500。
+     * 頁首送出後狀態碼已無法更改，產生 HTML 時發生錯誤改在頁面中顯示錯誤訊息。
+     * @param cacheKey 報表快取 key，null 表示不使用快取；命中時直接回傳快取內容（不取得資料），未命中時於完整產生後放入快取
+     * @throws AdmissionRejectedException 同時執行的請求已達上限
+     * @throws WalkBudgetExceededException 單次請求的 commit 超過上限
+     */
+    private ResponseEntity<StreamingResponseBody> streamHtml(String cacheKey, TableSource source, ReportRenderer renderer)
+            throws WalkBudgetExceededException {
+        byte[] cached = cacheKey != null ? reportCache.get(cacheKey) : null;
+        StreamingResponseBody body;
+        if (cached != null) {
+            body = outputStream -> outputStream.write(cached);
+        } else {
+            CommitTable commits;
+            try {
+                commits = source.fetch();
+            } catch (AdmissionRejectedException | WalkBudgetExceededException e) {
+                throw e;
+            } catch (Exception e) {
+                e.printStackTrace();
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                        .body(outputStream -> outputStream.write(("<h1>產生報告失敗</h1><p>" + HtmlUtils.htmlEscape(String.valueOf(e.getMessage()))
+                                + "</p>").getBytes(StandardCharsets.UTF_8)));
+            }
+            body = outputStream -> writeHtml(cacheKey, outputStream, out -> renderer.render(commits, out));
+        }
+        return ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                .body(body);
+    }
+
+    private void writeHtml(String cacheKey, OutputStream outputStream, HtmlWriter writer) throws IOException {
+        ReportCache.Recorder recorder = cacheKey != null ? reportCache.record(cacheKey, outputStream) : null;
+        Writer out = new OutputStreamWriter(recorder != null ? recorder : outputStream, StandardCharsets.UTF_8);
+        try {
+            writer.write(out);
+            out.flush();
+            if (recorder != null) {
+                recorder.commit();
+            }
         } catch (Exception e) {
             e.printStackTrace();
-            return ResponseEntity.status(500).body("<h1>產生報告失敗</h1><p>" + e.getMessage() + "</p>");
+            htmlReportGenerator.writeReportError(out, e.getMessage());
         }
+        out.flush();
+    }
+
+    /**
+     * 准入控制拒絕：佇列已滿回 429、等待逾時回 503，並帶 Retry-After
+     */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<String> admissionRejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(e.getMessage());
+    }
+
+    /**
+     * 單次請求的 commit 超過上限，走訪已中止
+     */
+    @ExceptionHandler(WalkBudgetExceededException.class)
+    public ResponseEntity<String> walkBudgetExceeded(WalkBudgetExceededException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(e.getMessage());
+    }
+
+    /**
+     * 取得報告的 commit 表（在送出回應前執行）
+     */
+    @FunctionalInterface
+    private interface TableSource {
+        CommitTable fetch() throws Exception;
+    }
+
+    /**
+     * 以取得的 commit 表產生報告 HTML
+     */
+    @FunctionalInterface
+    private interface ReportRenderer {
+        void render(CommitTable commits, Writer out) throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface HtmlWriter {
+        void write(Writer out) throws Exception;
     }
 
-}
\ No newline at end of file
+}
@@ -1,53 +1,130 @@
 package com.example.gitsync.controller;
 
-import com.example.gitsync.service.GitService;
-import org.eclipse.jgit.revwalk.RevCommit;
+import com.example.gitsync.service.AdmissionControl;
+import com.example.gitsync.service.AdmissionRejectedException;
+import com.example.gitsync.service.CommitTable;
+import com.example.gitsync.service.MultiRepoReportSource;
+import com.example.gitsync.service.ReportCache;
+import com.example.gitsync.service.ReportCacheKeys;
+import com.example.gitsync.service.WalkBudgetExceededException;
+import com.example.gitsync.util.ExcelReportUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @Controller
 public class GitReportController {
     @Autowired
-    private GitService gitService;
+    private MultiRepoReportSource multiRepoReportSource;
+    @Autowired
+    private AdmissionControl admissionControl;
+    @Autowired
+    private ReportCache reportCache;
+    @Autowired
+    private ReportCacheKeys reportCacheKeys;
 
     @GetMapping("/git-report")
     public String showForm() {
         return "git_report_form";
     }
 
+    /**
+     * @param repoUrl 一個或多個倉庫網址（可重複參數或以逗號分隔）；多個倉庫時平行取得並合併，報表多一欄倉庫
+     */
     @PostMapping("/git-report/download")
-    public ResponseEntity<InputStreamResource> downloadExcel(
-            @RequestParam String repoUrl,
+    public ResponseEntity<StreamingResponseBody> downloadExcel(
+            @RequestParam List<String> repoUrl,
             @RequestParam String username,
             @RequestParam String password,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime effdate,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime expdate,
-            @RequestParam(name = "branches", required = false) List<String> branches
+            @RequestParam(name = "branches", required = false) List<String> branches,
+            @RequestParam(name = "source", defaultValue = "clone") String source,
+            @RequestParam(name = "sheetPerBranch", defaultValue = "false") boolean sheetPerBranch
     ) throws Exception {
-        Map<String, List<RevCommit>> allData = gitService.fetchCommitsByDateRange(repoUrl, username, password, effdate, expdate, branches);
-        ByteArrayOutputStream out = com.example.gitsync.util.ExcelReportUtil.generateExcel(allData);
-        InputStreamResource resource = new InputStreamResource(new ByteArrayInputStream(out.toByteArray()));
+        String format = sheetPerBranch ? ReportCacheKeys.FORMAT_XLSX_SHEET_PER_BRANCH : ReportCacheKeys.FORMAT_XLSX;
+        List<String> repoUrls = MultiRepoReportSource.normalizeRepoUrls(repoUrl);
+        String cacheKey = reportCacheKeys.resolve(source, repoUrls, username, password, effdate, expdate, branches, format);
+        byte[] cached = cacheKey != null ? reportCache.get(cacheKey) : null;
+        // 活頁簿以 SXSSF 直接寫到回應串流
+        StreamingResponseBody body;
+        if (cached != null) {
+            body = out -> out.write(cached);
+        } else {
+            // 先取得資料，准入拒絕（clone 來源每個倉庫 fetch 時取得名額）與超過走訪上限都能在輸出前回報
+            // gitlab 來源的 password 欄位填 Personal Access Token；db 來源讀取已同步的 WorkLog
+            CommitTable allData = multiRepoReportSource.fetchAll(source, repoUrls, username, password, effdate, expdate, branches,
+                    admissionControl.newBudget());
+            body = out -> writeExcel(cacheKey, out, o -> ExcelReportUtil.writeExcel(allData, o, sheetPerBranch));
+        }
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=git_report.xlsx")
                 .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
-                .body(resource);
+                .body(body);
+    }
+
+    /**
+     * @param cacheKey 報表快取 key，null 表示不使用快取；活頁簿完整寫出後才放入快取
+     */
+    private void writeExcel(String cacheKey, OutputStream out, ExcelWriter writer) throws IOException {
+        try {
+            if (cacheKey == null) {
+                writer.write(out);
+                return;
+            }
+            ReportCache.Recorder recorder = reportCache.record(cacheKey, out);
+            writer.write(recorder);
+            recorder.flush();
+            recorder.commit();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * 准入控制拒絕：佇列已滿回 429、等待逾時回 503，並帶 Retry-After
+     */
+    @ExceptionHandler(AdmissionRejectedException.class)
+    public ResponseEntity<String> admissionRejected(AdmissionRejectedException e) {
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(e.getMessage());
+    }
+
+    /**
+     * 單次請求的 commit 超過上限，走訪已中止
+     */
+    @ExceptionHandler(WalkBudgetExceededException.class)
+    public ResponseEntity<String> walkBudgetExceeded(WalkBudgetExceededException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(e.getMessage());
+    }
+
+    @FunctionalInterface
+    private interface ExcelWriter {
+        void write(OutputStream out) throws Exception;
     }
 }
@@ -2,6 +2,7 @@ package com.example.gitsync.controller;
 
 import com.example.gitsync.model.WorkLog;
 import com.example.gitsync.repository.WorkLogRepository;
+import com.example.gitsync.repository.WorkLogSpecifications;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
@@ -13,7 +14,6 @@ import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @Controller
 public class GitSearchController {
@@ -30,26 +30,9 @@ public class GitSearchController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo,
             Model model
     ) {
-        List<WorkLog> logs = workLogRepository.findAll();
-        // 篩選條件
-        if (commitHash != null && !commitHash.isEmpty()) {
-            logs = logs.stream().filter(l -> l.getCommitHash() != null && l.getCommitHash().contains(commitHash)).collect(Collectors.toList());
-        }
-        if (authorName != null && !authorName.isEmpty()) {
-            logs = logs.stream().filter(l -> l.getAuthorName() != null && l.getAuthorName().contains(authorName)).collect(Collectors.toList());
-        }
-        if (branchName != null && !branchName.isEmpty()) {
-            logs = logs.stream().filter(l -> l.getBranchName() != null && l.getBranchName().contains(branchName)).collect(Collectors.toList());
-        }
-        if (message != null && !message.isEmpty()) {
-            logs = logs.stream().filter(l -> l.getMessage() != null && l.getMessage().contains(message)).collect(Collectors.toList());
-        }
-        if (dateFrom != null) {
-            logs = logs.stream().filter(l -> l.getCommitDateTime() != null && !l.getCommitDateTime().toLocalDate().isBefore(dateFrom)).collect(Collectors.toList());
-        }
-        if (dateTo != null) {
-            logs = logs.stream().filter(l -> l.getCommitDateTime() != null && !l.getCommitDateTime().toLocalDate().isAfter(dateTo)).collect(Collectors.toList());
-        }
+        // 篩選條件交由資料庫處理
+        List<WorkLog> logs = workLogRepository.findAll(WorkLogSpecifications.search(
+                commitHash, authorName, branchName, message, null, dateFrom, dateTo));
         // 分組：分支+作者+日期
         Map<String, Map<String, Map<LocalDate, List<WorkLog>>>> groupMap = new HashMap<>();
         for (WorkLog log : logs) {
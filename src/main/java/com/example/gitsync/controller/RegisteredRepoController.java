@@ -0,0 +1,103 @@
+package com.example.gitsync.controller;
+
+import com.example.gitsync.model.RegisteredRepo;
+import com.example.gitsync.repository.RegisteredRepoRepository;
+import com.example.gitsync.service.RepoSyncScheduler;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 排程同步的倉庫登錄。credentialRef 為 gitsync.credentials.{名稱} 的憑證名稱，不直接保存密碼；
+ * 其他格式（例如任意設定鍵）一律拒絕。
+ */
+@RestController
+@RequestMapping("/api/repos")
+public class RegisteredRepoController {
+    private final RegisteredRepoRepository registeredRepoRepository;
+    private final RepoSyncScheduler repoSyncScheduler;
+
+    public RegisteredRepoController(RegisteredRepoRepository registeredRepoRepository, RepoSyncScheduler repoSyncScheduler) {
+        this.registeredRepoRepository = registeredRepoRepository;
+        this.repoSyncScheduler = repoSyncScheduler;
+    }
+
+    @GetMapping
+    public List<RegisteredRepo> list() {
+        return registeredRepoRepository.findAll();
+    }
+
+    @PostMapping
+    public RegisteredRepo create(@RequestBody RegisteredRepo repo) {
+        validateCredentialRef(repo.getCredentialRef());
+        repo.setId(null);
+        repo.setNextSyncDateTime(null);
+        repo.setLastJobId(null);
+        repo.setLastStatus(null);
+        repo.setLastSyncDateTime(null);
+        repo.setUpdateDateTime(LocalDateTime.now());
+        return registeredRepoRepository.save(repo);
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<RegisteredRepo> update(@PathVariable Long id, @RequestBody RegisteredRepo request) {
+        validateCredentialRef(request.getCredentialRef());
+        return registeredRepoRepository.findById(id).map(repo -> {
+            repo.setGitUrl(request.getGitUrl());
+            repo.setUsername(request.getUsername());
+            repo.setCredentialRef(request.getCredentialRef());
+            repo.setBranchNames(request.getBranchNames());
+            repo.setSyncIntervalMinutes(request.getSyncIntervalMinutes());
+            repo.setLookbackDays(request.getLookbackDays());
+            repo.setEnabled(request.isEnabled());
+            repo.setUpdateDateTime(LocalDateTime.now());
+            return ResponseEntity.ok(registeredRepoRepository.save(repo));
+        }).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> delete(@PathVariable Long id) {
+        if (!registeredRepoRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        registeredRepoRepository.deleteById(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * 立即排入同步，於下次排程檢查時提交
+     */
+    @PostMapping("/{id}/sync")
+    public ResponseEntity<RegisteredRepo> syncNow(@PathVariable Long id) {
+        return registeredRepoRepository.findById(id).map(repo -> {
+            repoSyncScheduler.syncNow(repo);
+            return ResponseEntity.accepted().body(repo);
+        }).orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> badRequest(IllegalArgumentException e) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("error", e.getMessage());
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    private static void validateCredentialRef(String credentialRef) {
+        if (credentialRef != null && !credentialRef.isEmpty() && !RepoSyncScheduler.isValidCredentialRef(credentialRef)) {
+            throw new IllegalArgumentException("credentialRef 只能是憑證名稱（英數字、底線、減號），對應設定 "
+                    + RepoSyncScheduler.CREDENTIAL_PREFIX + "<名稱>");
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.gitsync.controller;
+
+import com.example.gitsync.service.ReportCache;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 報表快取狀態：命中 / 未命中次數、淘汰次數與目前佔用的大小
+ */
+@RestController
+@RequestMapping("/api/report-cache")
+public class ReportCacheController {
+    private final ReportCache reportCache;
+
+    public ReportCacheController(ReportCache reportCache) {
+        this.reportCache = reportCache;
+    }
+
+    @GetMapping
+    public ReportCache.Stats stats() {
+        return reportCache.stats();
+    }
+
+    @DeleteMapping
+    public ResponseEntity<Void> clear() {
+        reportCache.clear();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.gitsync.controller;
+
+import com.example.gitsync.model.SyncJob;
+import com.example.gitsync.service.SyncJobService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 背景同步工作 API：提交後立即回傳工作 id，再以 GET /api/sync/jobs/{id} 輪詢進度
+ */
+@RestController
+@RequestMapping("/api/sync/jobs")
+public class SyncJobController {
+    private final SyncJobService syncJobService;
+
+    public SyncJobController(SyncJobService syncJobService) {
+        this.syncJobService = syncJobService;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> submit(
+            @RequestParam String repoUrl,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) String password,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime effdate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime expdate,
+            @RequestParam(name = "branches", required = false) List<String> branches
+    ) {
+        try {
+            SyncJob job = syncJobService.submitBranchSync(repoUrl, username, password, effdate, expdate, branches);
+            return ResponseEntity.accepted().location(URI.create("/api/sync/jobs/" + job.getJobId())).body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("同步工作佇列已滿，請稍後再試");
+        }
+    }
+
+    @GetMapping
+    public List<SyncJob> recent() {
+        return syncJobService.recent();
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<SyncJob> get(@PathVariable String jobId) {
+        return syncJobService.find(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{jobId}/cancel")
+    public ResponseEntity<String> cancel(@PathVariable String jobId) {
+        if (syncJobService.cancel(jobId)) {
+            return ResponseEntity.accepted().body("已要求取消同步工作 " + jobId);
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("工作不存在或已結束: " + jobId);
+    }
+}
@@ -1,23 +1,42 @@
 package com.example.gitsync.controller;
 
 import com.example.gitsync.model.WorkLog;
+import com.example.gitsync.repository.WorkLogPeriodSummary;
 import com.example.gitsync.repository.WorkLogRepository;
+import com.example.gitsync.repository.WorkLogRollupWriter;
+import com.example.gitsync.repository.WorkLogSpecifications;
+import com.example.gitsync.service.WorkLogQueryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.stream.Collectors;
 
 @RestController
 public class WorkLogRestController {
+    private static final int STREAM_FLUSH_ROWS = 200;
+
     @Autowired
     private WorkLogRepository workLogRepository;
+    @Autowired
+    private WorkLogQueryService workLogQueryService;
+    @Autowired
+    private WorkLogRollupWriter workLogRollupWriter;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @GetMapping("/api/worklog/search")
     public Map<String, Map<String, Map<LocalDate, List<WorkLog>>>> search(
@@ -29,28 +48,9 @@ public class WorkLogRestController {
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
             @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo
     ) {
-        List<WorkLog> logs = workLogRepository.findAll();
-        if (commitHash != null && !commitHash.isEmpty()) {
-            logs = logs.stream().filter(l -> l.getCommitHash() != null && l.getCommitHash().contains(commitHash)).collect(Collectors.toList());
-        }
-        if (authorName != null && !authorName.isEmpty()) {
-            logs = logs.stream().filter(l -> l.getAuthorName() != null && l.getAuthorName().contains(authorName)).collect(Collectors.toList());
-        }
-        if (branchName != null && !branchName.isEmpty()) {
-            logs = logs.stream().filter(l -> l.getBranchName() != null && l.getBranchName().contains(branchName)).collect(Collectors.toList());
-        }
-        if (message != null && !message.isEmpty()) {
-            logs = logs.stream().filter(l -> l.getMessage() != null && l.getMessage().contains(message)).collect(Collectors.toList());
-        }
-        if (workingHours != null) {
-            logs = logs.stream().filter(l -> l.getWorkingHours() == workingHours).collect(Collectors.toList());
-        }
-        if (dateFrom != null) {
-            logs = logs.stream().filter(l -> l.getCommitDateTime() != null && !l.getCommitDateTime().toLocalDate().isBefore(dateFrom)).collect(Collectors.toList());
-        }
-        if (dateTo != null) {
-            logs = logs.stream().filter(l -> l.getCommitDateTime() != null && !l.getCommitDateTime().toLocalDate().isAfter(dateTo)).collect(Collectors.toList());
-        }
+        // 篩選條件交由資料庫處理
+        List<WorkLog> logs = workLogRepository.findAll(WorkLogSpecifications.search(
+                commitHash, authorName, branchName, message, workingHours, dateFrom, dateTo));
         // 分組：分支+作者+日期
         Map<String, Map<String, Map<LocalDate, List<WorkLog>>>> groupMap = new HashMap<>();
         for (WorkLog log : logs) {
@@ -64,4 +64,132 @@ public class WorkLogRestController {
         }
         return groupMap;
     }
+
+    /**
+     * 分頁查詢（keyset 分頁），依 CommitDateTime、CommitHash 由新到舊排序
+     * @param cursor 上一頁回傳的 nextCursor，第一頁不填
+     * @param size 每頁筆數（上限 gitsync.search.max-page-size）
+     */
+    @GetMapping("/api/worklog/search/page")
+    public ResponseEntity<?> searchPage(
+            @RequestParam(required = false) String commitHash,
+            @RequestParam(required = false) String authorName,
+            @RequestParam(required = false) String branchName,
+            @RequestParam(required = false) String message,
+            @RequestParam(required = false) Double workingHours,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int size
+    ) {
+        try {
+            return ResponseEntity.ok(workLogQueryService.searchPage(WorkLogSpecifications.search(
+                    commitHash, authorName, branchName, message, workingHours, dateFrom, dateTo), cursor, size));
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * 串流查詢：以 NDJSON（每行一筆 JSON）逐筆輸出，排序與分頁查詢相同
+     */
+    @GetMapping(value = "/api/worklog/search/stream", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> searchStream(
+            @RequestParam(required = false) String commitHash,
+            @RequestParam(required = false) String authorName,
+            @RequestParam(required = false) String branchName,
+            @RequestParam(required = false) String message,
+            @RequestParam(required = false) Double workingHours,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo
+    ) {
+        Specification<WorkLog> spec = WorkLogSpecifications.search(
+                commitHash, authorName, branchName, message, workingHours, dateFrom, dateTo);
+        StreamingResponseBody body = out -> {
+            ObjectWriter writer = objectMapper.writerFor(WorkLog.class);
+            int[] pending = {0};
+            workLogQueryService.stream(spec, log -> {
+                out.write(writer.writeValueAsBytes(log));
+                out.write('\n');
+                if (++pending[0] >= STREAM_FLUSH_ROWS) {
+                    out.flush();
+                    pending[0] = 0;
+                }
+            });
+            out.flush();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    /**
+     * 人天彙總：由 WorkLogDaily 每日彙總依 分支 / 作者 / 區間 GROUP BY，只回傳彙總列
+     * @param period day / week / month
+     * @param authorName 作者（部分比對），可不填
+     * @param branchName 分支（部分比對），可不填
+     */
+    @GetMapping("/api/worklog/summary")
+    public ResponseEntity<Map<String, Object>> summary(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateFrom,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate dateTo,
+            @RequestParam(defaultValue = "day") String period,
+            @RequestParam(required = false) String authorName,
+            @RequestParam(required = false) String branchName
+    ) {
+        LocalDate from = dateFrom;
+        LocalDate to = dateTo.plusDays(1);
+        String authorPattern = likePattern(authorName);
+        String branchPattern = likePattern(branchName);
+        List<WorkLogPeriodSummary> rows;
+        switch (period.toLowerCase()) {
+            case "day":
+                rows = workLogRepository.summarizeByDay(from, to, authorPattern, branchPattern);
+                break;
+            case "week":
+                rows = workLogRepository.summarizeByWeek(from, to, authorPattern, branchPattern);
+                break;
+            case "month":
+                rows = workLogRepository.summarizeByMonth(from, to, authorPattern, branchPattern);
+                break;
+            default:
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("error", "period 只接受 day / week / month");
+                return ResponseEntity.badRequest().body(error);
+        }
+        long totalPersonDays = 0;
+        long totalCommits = 0;
+        for (WorkLogPeriodSummary row : rows) {
+            totalPersonDays += row.getPersonDays();
+            totalCommits += row.getCommitCount();
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("period", period.toLowerCase());
+        result.put("dateFrom", dateFrom);
+        result.put("dateTo", dateTo);
+        result.put("totalPersonDays", totalPersonDays);
+        result.put("totalCommits", totalCommits);
+        result.put("rows", rows);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 由 WorkLog 完整重建每日彙總（平常於同步寫入時即時更新，資料曾被直接修改時使用）
+     */
+    @PostMapping("/api/worklog/rollup/rebuild")
+    public Map<String, Object> rebuildRollup() {
+        long start = System.currentTimeMillis();
+        int rows = workLogRollupWriter.rebuild();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rows", rows);
+        result.put("elapsedMillis", System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private static String likePattern(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        return "%" + value.replace("[", "[[]").replace("%", "[%]").replace("_", "[_]") + "%";
+    }
 }
@@ -1,22 +1,319 @@
 package com.example.gitsync.factory;
 
 import com.jcraft.jsch.Session;
+import org.eclipse.jgit.errors.TransportException;
+import org.eclipse.jgit.transport.CredentialItem;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.FtpChannel;
 import org.eclipse.jgit.transport.JschConfigSessionFactory;
 import org.eclipse.jgit.transport.OpenSshConfig;
+import org.eclipse.jgit.transport.RemoteSession;
+import org.eclipse.jgit.transport.RemoteSession2;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.util.FS;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 自訂 SSH Session Factory，用於 JGit。
  * 這個實作會：
  * 1. 停用嚴格的主機金鑰檢查 (StrictHostKeyChecking=no)。
  * 2. 使用指定的私鑰檔案進行身分驗證。
+ * 3. 重複使用已驗證的 JSch session：依 (使用者, 主機, 帳密) 保留閒置的連線，
+ *    連續對同一台伺服器 fetch / ls-remote 時不必重新交換金鑰與驗證。
+ * 4. 每台主機同時開啟的 session 數有上限，閒置超過期限的 session 會被關閉。
+ * 同一個 instance 應由所有指令共用（透過 TransportConfigCallback 設定到 SshTransport）。
  */
 public class CustomSshSessionFactory extends JschConfigSessionFactory {
 
+    /** 等待名額時檢查閒置池的間隔 */
+    private static final long ACQUIRE_POLL_MILLIS = 100;
+
+    /** 取得 getSession 內部新建、尚未包裝的 JSch session（同一執行緒內） */
+    private final ThreadLocal<Session> createdSession = new ThreadLocal<>();
+
+    private final int maxSessionsPerHost;
+    private final long idleTimeoutMillis;
+    private final long acquireTimeoutMillis;
+    /** user@host:port#帳密摘要 → 閒置 session，最近歸還的在最前面 */
+    private final Map<String, Deque<PooledSession>> idleSessions = new ConcurrentHashMap<>();
+    /** host:port → 可再開啟的 session 數（使用中與閒置的都佔一個名額） */
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reaper;
+    private volatile boolean closed;
+
+    /**
+     * @param maxSessionsPerHost 每台主機同時開啟的 session 上限
+     * @param idleTimeoutSeconds 閒置 session 保留秒數，0 表示不保留（每次用完即關閉）
+     * @param acquireTimeoutSeconds 已達上限時等待其他請求歸還 session 的秒數
+     */
+    public CustomSshSessionFactory(int maxSessionsPerHost, long idleTimeoutSeconds, long acquireTimeoutSeconds) {
+        this.maxSessionsPerHost = Math.max(1, maxSessionsPerHost);
+        this.idleTimeoutMillis = Math.max(0, idleTimeoutSeconds) * 1000;
+        this.acquireTimeoutMillis = Math.max(0, acquireTimeoutSeconds) * 1000;
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ssh-session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (idleTimeoutMillis > 0) {
+            long period = Math.max(1000, Math.min(idleTimeoutMillis / 2, 30_000));
+            reaper.scheduleWithFixedDelay(this::evictExpired, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
     @Override
     protected void configure(OpenSshConfig.Host host, Session session) {
         // 設定不進行嚴格的主機金鑰檢查，避免第一次連線時需要手動確認
         session.setConfig("StrictHostKeyChecking", "no");
+        createdSession.set(session);
     }
 
-}
+    /**
+     * 優先取用同一使用者、同一組帳密的閒置 session；沒有時才建立新連線（受每台主機上限限制）
+     */
+    @Override
+    public RemoteSession getSession(URIish uri, CredentialsProvider credentialsProvider, FS fs, int tms) throws TransportException {
+        if (closed) {
+            throw new TransportException(uri, "SSH 連線池已關閉");
+        }
+        String hostKey = uri.getHost() + ":" + uri.getPort();
+        String poolKey = uri.getUser() + "@" + hostKey + "#" + credentialDigest(uri, credentialsProvider);
+
+        Semaphore permits = hostPermits.computeIfAbsent(hostKey, k -> new Semaphore(maxSessionsPerHost, true));
+        PooledSession reused = acquire(uri, poolKey, hostKey, permits);
+        if (reused != null) {
+            return reused;
+        }
+        try {
+            RemoteSession session = super.getSession(uri, credentialsProvider, fs, tms);
+            return new PooledSession(poolKey, permits, session, createdSession.get());
+        } catch (TransportException | RuntimeException e) {
+            permits.release();
+            throw e;
+        } finally {
+            createdSession.remove();
+        }
+    }
+
+    /**
+     * SshTransport 關閉時呼叫：session 仍連線時放回閒置池，否則關閉並釋放名額
+     */
+    @Override
+    public void releaseSession(RemoteSession session) {
+        if (!(session instanceof PooledSession)) {
+            super.releaseSession(session);
+            return;
+        }
+        PooledSession pooled = (PooledSession) session;
+        if (closed || idleTimeoutMillis == 0 || pooled.session == null || !pooled.session.isConnected()) {
+            pooled.close();
+            return;
+        }
+        pooled.lastReleased = System.currentTimeMillis();
+        idleSessions.computeIfAbsent(pooled.poolKey, k -> new ConcurrentLinkedDeque<>()).offerFirst(pooled);
+        if (closed) {
+            closeIdle(pooled.poolKey);
+        }
+    }
+
+    /**
+     * 關閉所有閒置 session 並停止接受新的請求；使用中的 session 於歸還時關閉
+     */
+    public void shutdown() {
+        closed = true;
+        reaper.shutdownNow();
+        for (String poolKey : new ArrayList<>(idleSessions.keySet())) {
+            closeIdle(poolKey);
+        }
+    }
+
+    /**
+     * 取得 session 名額：已達上限時先關閉同主機其他帳號的閒置 session 騰出名額，仍不足才等待歸還。
+     * 閒置 session 仍佔著名額，因此等待期間也要檢查閒置池，有同帳密的 session 歸還時直接取用。
+     *
+     * @return 可重複使用的閒置 session；取得新名額時為 null
+     */
+    private PooledSession acquire(URIish uri, String poolKey, String hostKey, Semaphore permits) throws TransportException {
+        long deadline = System.currentTimeMillis() + acquireTimeoutMillis;
+        try {
+            while (true) {
+                PooledSession reused = pollIdle(poolKey);
+                if (reused != null) {
+                    return reused;
+                }
+                if (permits.tryAcquire() || (closeOneIdle(hostKey) && permits.tryAcquire())) {
+                    return null;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new TransportException(uri, "SSH 連線數已達上限（每台主機 " + maxSessionsPerHost + " 個），請稍後再試");
+                }
+                if (permits.tryAcquire(Math.min(remaining, ACQUIRE_POLL_MILLIS), TimeUnit.MILLISECONDS)) {
+                    return null;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransportException(uri, "等待 SSH 連線時被中斷");
+        }
+    }
+
+    private PooledSession pollIdle(String poolKey) {
+        Deque<PooledSession> idle = idleSessions.get(poolKey);
+        PooledSession session;
+        while (idle != null && (session = idle.pollFirst()) != null) {
+            if (session.isUsable()) {
+                return session;
+            }
+            session.close();
+        }
+        return null;
+    }
+
+    private boolean closeOneIdle(String hostKey) {
+        for (Map.Entry<String, Deque<PooledSession>> entry : idleSessions.entrySet()) {
+            if (entry.getKey().contains("@" + hostKey + "#")) {
+                // 最後面的是最久未使用的
+                PooledSession eldest = entry.getValue().pollLast();
+                if (eldest != null) {
+                    eldest.close();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void closeIdle(String poolKey) {
+        Deque<PooledSession> idle = idleSessions.get(poolKey);
+        PooledSession session;
+        while (idle != null && (session = idle.pollFirst()) != null) {
+            session.close();
+        }
+    }
+
+    private void evictExpired() {
+        for (Deque<PooledSession> idle : idleSessions.values()) {
+            List<PooledSession> expired = new ArrayList<>();
+            Iterator<PooledSession> it = idle.descendingIterator();
+            while (it.hasNext()) {
+                PooledSession session = it.next();
+                if (!session.isUsable()) {
+                    expired.add(session);
+                }
+            }
+            for (PooledSession session : expired) {
+                // 同時被取用時 remove 會失敗，交由取用端處理
+                if (idle.remove(session)) {
+                    session.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * 帳密的摘要，避免以不同（或錯誤）的密碼取用到其他請求已驗證的 session；不在記憶體中保留明文
+     */
+    private static String credentialDigest(URIish uri, CredentialsProvider credentialsProvider) {
+        if (credentialsProvider == null) {
+            return "";
+        }
+        CredentialItem.Username username = new CredentialItem.Username();
+        CredentialItem.Password password = new CredentialItem.Password();
+        try {
+            if (!credentialsProvider.supports(username, password) || !credentialsProvider.get(uri, username, password)) {
+                return "";
+            }
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(username.getValue()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            if (password.getValue() != null) {
+                digest.update(new String(password.getValue()).getBytes(StandardCharsets.UTF_8));
+            }
+            password.clear();
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            // 無法取得帳密時不共用 session
+            return "nonshared-" + System.identityHashCode(credentialsProvider);
+        }
+    }
 
+    /**
+     * 池中的 session：exec 轉交給 JGit 原本的 JschSession，每次 exec 開新的 channel，底層連線可重複使用
+     */
+    private class PooledSession implements RemoteSession2 {
+        final String poolKey;
+        final Semaphore permits;
+        final RemoteSession delegate;
+        final Session session;
+        final AtomicBoolean disconnected = new AtomicBoolean();
+        volatile long lastReleased;
+
+        PooledSession(String poolKey, Semaphore permits, RemoteSession delegate, Session session) {
+            this.poolKey = poolKey;
+            this.permits = permits;
+            this.delegate = delegate;
+            this.session = session;
+        }
+
+        boolean isUsable() {
+            return session != null && session.isConnected()
+                    && System.currentTimeMillis() - lastReleased <= idleTimeoutMillis;
+        }
+
+        @Override
+        public Process exec(String commandName, int timeout) throws IOException {
+            return delegate.exec(commandName, timeout);
+        }
+
+        @Override
+        public Process exec(String commandName, Map<String, String> environment, int timeout) throws IOException {
+            if (delegate instanceof RemoteSession2) {
+                return ((RemoteSession2) delegate).exec(commandName, environment, timeout);
+            }
+            return delegate.exec(commandName, timeout);
+        }
+
+        @Override
+        public FtpChannel getFtpChannel() {
+            return delegate.getFtpChannel();
+        }
+
+        /**
+         * 真正關閉連線並釋放主機名額（重複呼叫無作用）
+         */
+        @Override
+        public void disconnect() {
+            close();
+        }
+
+        void close() {
+            if (disconnected.compareAndSet(false, true)) {
+                try {
+                    delegate.disconnect();
+                } finally {
+                    permits.release();
+                }
+            }
+        }
+    }
+}
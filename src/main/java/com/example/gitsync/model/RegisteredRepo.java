@@ -0,0 +1,64 @@
+package com.example.gitsync.model;
+
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 登錄於排程同步的 Git 倉庫。
+ * 不保存密碼：credentialRef 為憑證名稱（例如 repo-a），執行時才由 Environment 解析 gitsync.credentials.{名稱}
+ * （可由環境變數 GITSYNC_CREDENTIALS_REPO_A 提供），只能取用此前綴下的設定。
+ */
+@Entity
+@Table(name = "RegisteredRepo", uniqueConstraints = @UniqueConstraint(columnNames = {"GitUrl"}))
+@Data
+public class RegisteredRepo {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "GitUrl", length = 200)
+    private String gitUrl;
+
+    @Column(name = "Username", length = 100)
+    private String username;
+
+    @Column(name = "CredentialRef", length = 200)
+    private String credentialRef;
+
+    // 逗號分隔的分支名稱，空值表示所有分支（仍套用 gitsync.branch.excludes）
+    @Column(name = "BranchNames", length = 2000)
+    private String branchNames;
+
+    @Column(name = "SyncIntervalMinutes")
+    private int syncIntervalMinutes = 60;
+
+    // 每次同步涵蓋的天數（effdate = 現在 - lookbackDays）
+    @Column(name = "LookbackDays")
+    private int lookbackDays = 90;
+
+    @Column(name = "Enabled")
+    private boolean enabled = true;
+
+    @Column(name = "NextSyncDateTime")
+    private LocalDateTime nextSyncDateTime;
+
+    @Column(name = "LastJobId", length = 36)
+    private String lastJobId;
+
+    @Column(name = "LastStatus", length = 20)
+    private String lastStatus;
+
+    @Column(name = "LastSyncDateTime")
+    private LocalDateTime lastSyncDateTime;
+
+    @Column(name = "UpdateDateTime")
+    private LocalDateTime updateDateTime;
+}
@@ -0,0 +1,89 @@
+package com.example.gitsync.model;
+
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 背景同步工作的紀錄，服務重新啟動後仍可查詢曾執行過的工作與結果。
+ * 執行中的即時進度保存在記憶體，工作開始與結束時寫回資料庫。
+ */
+@Entity
+@Table(name = "SyncJob", indexes = @Index(name = "IX_SyncJob_CreateDateTime", columnList = "CreateDateTime"))
+@Data
+public class SyncJob {
+    public static final String STATUS_QUEUED = "QUEUED";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_SUCCEEDED = "SUCCEEDED";
+    public static final String STATUS_FAILED = "FAILED";
+    public static final String STATUS_CANCELLED = "CANCELLED";
+
+    /** 依分支區間增量同步 WorkLog */
+    public static final String TYPE_BRANCHES = "BRANCHES";
+    /** 同步預設分支的 GitCommit 與指定分支的 WorkLog（/api/git/sync） */
+    public static final String TYPE_COMMITS = "COMMITS";
+
+    @Id
+    @Column(name = "JobId", length = 36)
+    private String jobId;
+
+    @Column(name = "JobType", length = 20)
+    private String jobType;
+
+    @Column(name = "GitUrl", length = 200)
+    private String gitUrl;
+
+    // 逗號分隔，未指定時為空
+    @Column(name = "BranchNames", length = 2000)
+    private String branchNames;
+
+    @Column(name = "Effdate")
+    private LocalDateTime effdate;
+
+    @Column(name = "Expdate")
+    private LocalDateTime expdate;
+
+    @Column(name = "Status", length = 20)
+    private String status;
+
+    @Column(name = "Phase", length = 40)
+    private String phase;
+
+    @Column(name = "FetchTask", length = 100)
+    private String fetchTask;
+
+    @Column(name = "FetchDone")
+    private int fetchDone;
+
+    @Column(name = "FetchTotal")
+    private int fetchTotal;
+
+    @Column(name = "CommitsWalked")
+    private long commitsWalked;
+
+    @Column(name = "RowsWritten")
+    private long rowsWritten;
+
+    @Column(name = "RowsInserted")
+    private long rowsInserted;
+
+    @Column(name = "RowsUpdated")
+    private long rowsUpdated;
+
+    @Column(name = "ErrorMessage", length = 1000)
+    private String errorMessage;
+
+    @Column(name = "CreateDateTime")
+    private LocalDateTime createDateTime;
+
+    @Column(name = "StartDateTime")
+    private LocalDateTime startDateTime;
+
+    @Column(name = "EndDateTime")
+    private LocalDateTime endDateTime;
+}
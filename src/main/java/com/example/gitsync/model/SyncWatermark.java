@@ -0,0 +1,42 @@
+package com.example.gitsync.model;
+
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+/**
+ * 記錄每個 (gitUrl, branch) 上次同步到的分支頂端 commit，
+ * 下次同步只需從新的頂端走到這個 commit 為止。
+ */
+@Entity
+@Table(name = "SyncWatermark", uniqueConstraints = @UniqueConstraint(columnNames = {"GitUrl", "BranchName"}))
+@Data
+public class SyncWatermark {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "GitUrl", length = 200)
+    private String gitUrl;
+
+    @Column(name = "BranchName", length = 200)
+    private String branchName;
+
+    // 上次同步時的分支頂端 commit
+    @Column(name = "TipCommit", length = 40)
+    private String tipCommit;
+
+    // 已同步資料涵蓋的起始時間，早於此時間的同步需重新完整走訪
+    @Column(name = "SyncedFrom")
+    private LocalDateTime syncedFrom;
+
+    @Column(name = "UpdateDateTime")
+    private LocalDateTime updateDateTime;
+}
@@ -4,14 +4,21 @@ package com.example.gitsync.model;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 import lombok.Data;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "WorkLog")
+@Table(name = "WorkLog", indexes = {
+        @Index(name = "IX_WorkLog_AuthorName", columnList = "AuthorName"),
+        @Index(name = "IX_WorkLog_BranchName", columnList = "BranchName"),
+        @Index(name = "IX_WorkLog_CommitDateTime", columnList = "CommitDateTime"),
+        @Index(name = "IX_WorkLog_GitUrl", columnList = "GitUrl")
+})
 @Data
 public class WorkLog {
+    @Column(name = "BranchName")
     private String branchName;
 
     public String getBranchName() {
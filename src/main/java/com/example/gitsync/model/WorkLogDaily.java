@@ -0,0 +1,57 @@
+package com.example.gitsync.model;
+
+import lombok.Data;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * 每日彙總（物化）：每個 (gitUrl, 分支, 作者, 日期) 一列，
+ * 於 WorkLog 寫入時同步更新，人天相關查詢直接讀取此表，不必掃描 WorkLog。
+ */
+@Entity
+@Table(name = "WorkLogDaily", uniqueConstraints = @UniqueConstraint(columnNames = {"GitUrl", "BranchName", "AuthorName", "WorkDate"}),
+        indexes = @Index(name = "IX_WorkLogDaily_WorkDate", columnList = "WorkDate"))
+@Data
+public class WorkLogDaily {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "GitUrl", length = 200)
+    private String gitUrl;
+
+    @Column(name = "BranchName")
+    private String branchName;
+
+    @Column(name = "AuthorName", length = 100)
+    private String authorName;
+
+    // commit 日期（CommitDateTime 的日期部分）
+    @Column(name = "WorkDate")
+    private LocalDate workDate;
+
+    @Column(name = "CommitCount")
+    private int commitCount;
+
+    @Column(name = "FirstCommitTime")
+    private LocalDateTime firstCommitTime;
+
+    @Column(name = "LastCommitTime")
+    private LocalDateTime lastCommitTime;
+
+    // 當天各 commit 的 WorkingHours 合計
+    @Column(name = "WorkingHours")
+    private double workingHours;
+
+    @Column(name = "UpdateDateTime")
+    private LocalDateTime updateDateTime;
+}
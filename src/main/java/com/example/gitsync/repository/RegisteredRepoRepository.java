@@ -0,0 +1,13 @@
+package com.example.gitsync.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import com.example.gitsync.model.RegisteredRepo;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface RegisteredRepoRepository extends JpaRepository<RegisteredRepo, Long> {
+    List<RegisteredRepo> findByEnabledTrueAndNextSyncDateTimeBeforeOrderByNextSyncDateTime(LocalDateTime now);
+
+    List<RegisteredRepo> findByEnabledTrueAndNextSyncDateTimeIsNull();
+}
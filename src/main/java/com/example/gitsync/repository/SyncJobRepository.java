@@ -0,0 +1,13 @@
+package com.example.gitsync.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import com.example.gitsync.model.SyncJob;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface SyncJobRepository extends JpaRepository<SyncJob, String> {
+    List<SyncJob> findTop50ByOrderByCreateDateTimeDesc();
+
+    List<SyncJob> findByStatusIn(Collection<String> statuses);
+}
@@ -0,0 +1,13 @@
+package com.example.gitsync.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import com.example.gitsync.model.SyncWatermark;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface SyncWatermarkRepository extends JpaRepository<SyncWatermark, Long> {
+    Optional<SyncWatermark> findByGitUrlAndBranchName(String gitUrl, String branchName);
+
+    List<SyncWatermark> findByGitUrl(String gitUrl);
+}
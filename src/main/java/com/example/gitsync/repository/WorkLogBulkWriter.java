@@ -0,0 +1,164 @@
+package com.example.gitsync.repository;
+
+import com.example.gitsync.model.WorkLog;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * WorkLog 大量寫入。
+ * saveAll 對指定 @Id 的 entity 會先逐筆 SELECT 再 INSERT / UPDATE；這裡改為每個分段：
+ * 1. 以一次 IN 查詢找出已存在的 CommitHash
+ * 2. 不存在的以 JDBC batch INSERT，已存在的以 JDBC batch UPDATE
+ * 3. 每個分段獨立 commit，交易不會隨資料量無限變大
+ * 4. 同一交易內重算受影響的 WorkLogDaily 每日彙總（含更新前所屬的組別）
+ * 只使用標準 SQL，SQL Server 與 H2 皆可執行。
+ */
+@Repository
+public class WorkLogBulkWriter {
+
+    private static final String SELECT_EXISTING = "SELECT commit_hash, git_url, branch_name, author_name, commit_date_time "
+            + "FROM work_log WHERE commit_hash IN (:hashes)";
+    private static final String INSERT = "INSERT INTO work_log (commit_hash, author_name, branch_name, commit_date_time, message, "
+            + "working_hours, git_url, update_date_time) VALUES (:commitHash, :authorName, :branchName, :commitDateTime, :message, "
+            + ":workingHours, :gitUrl, :updateDateTime)";
+    private static final String UPDATE = "UPDATE work_log SET author_name = :authorName, branch_name = :branchName, "
+            + "commit_date_time = :commitDateTime, message = :message, working_hours = :workingHours, git_url = :gitUrl, "
+            + "update_date_time = :updateDateTime WHERE commit_hash = :commitHash";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final WorkLogRollupWriter rollupWriter;
+    private final int chunkSize;
+
+    public WorkLogBulkWriter(NamedParameterJdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                             WorkLogRollupWriter rollupWriter, @Value("${gitsync.sync.bulk-chunk-size:1000}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.rollupWriter = rollupWriter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // SQL Server 單一語句最多 2100 個參數，IN 查詢需低於此上限
+        this.chunkSize = Math.max(1, Math.min(chunkSize, 2000));
+    }
+
+    /**
+     * 依 CommitHash 新增或更新；同一批內重複的 CommitHash 以最後一筆為準（與 saveAll 相同）
+     */
+    public UpsertResult upsert(Collection<WorkLog> workLogs) {
+        Map<String, WorkLog> unique = new LinkedHashMap<>();
+        for (WorkLog workLog : workLogs) {
+            unique.remove(workLog.getCommitHash());
+            unique.put(workLog.getCommitHash(), workLog);
+        }
+        List<WorkLog> rows = new ArrayList<>(unique.values());
+        UpsertResult result = new UpsertResult();
+        for (int start = 0; start < rows.size(); start += chunkSize) {
+            List<WorkLog> chunk = rows.subList(start, Math.min(start + chunkSize, rows.size()));
+            UpsertResult chunkResult;
+            try {
+                chunkResult = transactionTemplate.execute(status -> writeChunk(chunk));
+            } catch (DuplicateKeyException e) {
+                // 查詢與寫入之間被其他同步寫入同一筆，重新查詢後再寫一次
+                chunkResult = transactionTemplate.execute(status -> writeChunk(chunk));
+            }
+            result.add(chunkResult);
+        }
+        return result;
+    }
+
+    private UpsertResult writeChunk(List<WorkLog> chunk) {
+        List<String> hashes = new ArrayList<>(chunk.size());
+        for (WorkLog workLog : chunk) {
+            hashes.add(workLog.getCommitHash());
+        }
+        Set<String> existing = new HashSet<>();
+        Set<WorkLogRollupWriter.DayKey> affectedDays = new LinkedHashSet<>();
+        jdbcTemplate.query(SELECT_EXISTING, new MapSqlParameterSource("hashes", hashes), rs -> {
+            existing.add(rs.getString("commit_hash"));
+            Timestamp commitDateTime = rs.getTimestamp("commit_date_time");
+            if (commitDateTime != null) {
+                affectedDays.add(new WorkLogRollupWriter.DayKey(rs.getString("git_url"), rs.getString("branch_name"),
+                        rs.getString("author_name"), commitDateTime.toLocalDateTime().toLocalDate()));
+            }
+        });
+        List<MapSqlParameterSource> inserts = new ArrayList<>();
+        List<MapSqlParameterSource> updates = new ArrayList<>();
+        for (WorkLog workLog : chunk) {
+            (existing.contains(workLog.getCommitHash()) ? updates : inserts).add(toParams(workLog));
+            if (workLog.getCommitDateTime() != null) {
+                affectedDays.add(new WorkLogRollupWriter.DayKey(workLog.getGitUrl(), workLog.getBranchName(),
+                        workLog.getAuthorName(), workLog.getCommitDateTime().toLocalDate()));
+            }
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT, inserts.toArray(new MapSqlParameterSource[0]));
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE, updates.toArray(new MapSqlParameterSource[0]));
+        }
+        rollupWriter.refresh(affectedDays);
+        UpsertResult result = new UpsertResult();
+        result.inserted = inserts.size();
+        result.updated = updates.size();
+        return result;
+    }
+
+    /**
+     * 明確指定參數型別，null 值時驅動程式不必再查詢參數中繼資料
+     */
+    private static MapSqlParameterSource toParams(WorkLog workLog) {
+        return new MapSqlParameterSource()
+                .addValue("commitHash", workLog.getCommitHash(), Types.VARCHAR)
+                .addValue("authorName", workLog.getAuthorName(), Types.VARCHAR)
+                .addValue("branchName", workLog.getBranchName(), Types.VARCHAR)
+                .addValue("commitDateTime", toTimestamp(workLog.getCommitDateTime()), Types.TIMESTAMP)
+                .addValue("message", workLog.getMessage(), Types.VARCHAR)
+                .addValue("workingHours", workLog.getWorkingHours(), Types.DOUBLE)
+                .addValue("gitUrl", workLog.getGitUrl(), Types.VARCHAR)
+                .addValue("updateDateTime", toTimestamp(workLog.getUpdateDateTime()), Types.TIMESTAMP);
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime dateTime) {
+        return dateTime != null ? Timestamp.valueOf(dateTime) : null;
+    }
+
+    /**
+     * 寫入結果：新增與更新的筆數
+     */
+    public static class UpsertResult {
+        private int inserted;
+        private int updated;
+
+        public void add(UpsertResult other) {
+            inserted += other.inserted;
+            updated += other.updated;
+        }
+
+        public int getInserted() {
+            return inserted;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getTotal() {
+            return inserted + updated;
+        }
+    }
+}
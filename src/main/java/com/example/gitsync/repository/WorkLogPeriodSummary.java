@@ -0,0 +1,20 @@
+package com.example.gitsync.repository;
+
+import java.time.LocalDate;
+
+/**
+ * 人天彙總結果（projection），由資料庫 GROUP BY 直接產生，不建立 WorkLog entity。
+ * 人天：同一分支、同一作者、同一天有 commit 即計 1 人天。
+ */
+public interface WorkLogPeriodSummary {
+    String getBranchName();
+
+    String getAuthorName();
+
+    /** 區間起始日：日彙總為當天，週彙總為該週週一，月彙總為該月 1 日 */
+    LocalDate getPeriodStart();
+
+    Long getPersonDays();
+
+    Long getCommitCount();
+}
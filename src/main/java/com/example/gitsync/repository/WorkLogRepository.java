@@ -1,7 +1,39 @@
 package com.example.gitsync.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import com.example.gitsync.model.WorkLog;
 
-public interface WorkLogRepository extends JpaRepository<WorkLog, String> {
-}
\ No newline at end of file
+import java.time.LocalDate;
+import java.util.List;
+
+public interface WorkLogRepository extends JpaRepository<WorkLog, String>, JpaSpecificationExecutor<WorkLog> {
+
+    // 人天彙總：讀取 WorkLogDaily 每日彙總（每個 分支 / 作者 / 日期 至多數列），內層算出所屬區間起始日，外層依 分支 / 作者 / 區間 GROUP BY
+    String SUMMARY_SELECT = "SELECT t.branch_name AS branchName, t.author_name AS authorName, t.period_start AS periodStart, "
+            + "COUNT(DISTINCT t.work_date) AS personDays, CAST(SUM(t.commit_count) AS BIGINT) AS commitCount FROM ("
+            + "SELECT d.branch_name, d.author_name, d.work_date, d.commit_count, ";
+    String SUMMARY_WHERE = " FROM work_log_daily d WHERE d.work_date >= :from AND d.work_date < :to"
+            + " AND (:authorName IS NULL OR d.author_name LIKE :authorName)"
+            + " AND (:branchName IS NULL OR d.branch_name LIKE :branchName)"
+            + ") t GROUP BY t.branch_name, t.author_name, t.period_start"
+            + " ORDER BY t.branch_name, t.author_name, t.period_start";
+
+    @Query(nativeQuery = true, value = SUMMARY_SELECT
+            + "d.work_date AS period_start" + SUMMARY_WHERE)
+    List<WorkLogPeriodSummary> summarizeByDay(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                              @Param("authorName") String authorName, @Param("branchName") String branchName);
+
+    // 1900-01-01 是週一，以與其相差的天數整除 7 取得週一，不受 DATEFIRST 設定影響
+    @Query(nativeQuery = true, value = SUMMARY_SELECT
+            + "CAST(DATEADD(day, DATEDIFF(day, 0, d.work_date) / 7 * 7, 0) AS date) AS period_start" + SUMMARY_WHERE)
+    List<WorkLogPeriodSummary> summarizeByWeek(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                               @Param("authorName") String authorName, @Param("branchName") String branchName);
+
+    @Query(nativeQuery = true, value = SUMMARY_SELECT
+            + "DATEFROMPARTS(YEAR(d.work_date), MONTH(d.work_date), 1) AS period_start" + SUMMARY_WHERE)
+    List<WorkLogPeriodSummary> summarizeByMonth(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                                                @Param("authorName") String authorName, @Param("branchName") String branchName);
+}
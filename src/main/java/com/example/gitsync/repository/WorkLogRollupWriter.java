@@ -0,0 +1,155 @@
+package com.example.gitsync.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 維護 WorkLogDaily 每日彙總。
+ * 1. WorkLog 寫入時（與寫入同一交易）只重算受影響的 (gitUrl, 分支, 作者, 日期)：先刪除該列，再由 WorkLog 彙總後寫回，
+ *    更新造成 commit 改變分支 / 作者 / 日期時，舊的與新的組別都會重算，結果與完整重建一致。
+ * 2. rebuild() 由 WorkLog 完整重建。
+ * gitUrl / 分支 / 作者可能為 null（舊版同步未記錄），比對時視 null 為相同值。
+ */
+@Repository
+public class WorkLogRollupWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(WorkLogRollupWriter.class);
+
+    private static final String KEY_MATCH = "(%1$s.git_url = :gitUrl OR (%1$s.git_url IS NULL AND :gitUrl IS NULL))"
+            + " AND (%1$s.branch_name = :branchName OR (%1$s.branch_name IS NULL AND :branchName IS NULL))"
+            + " AND (%1$s.author_name = :authorName OR (%1$s.author_name IS NULL AND :authorName IS NULL))";
+    private static final String DELETE_DAY = "DELETE FROM work_log_daily WHERE " + String.format(KEY_MATCH, "work_log_daily")
+            + " AND work_log_daily.work_date = :workDate";
+    private static final String INSERT_DAY = "INSERT INTO work_log_daily (git_url, branch_name, author_name, work_date, commit_count, "
+            + "first_commit_time, last_commit_time, working_hours, update_date_time) "
+            + "SELECT :gitUrl, :branchName, :authorName, :workDate, COUNT(*), MIN(w.commit_date_time), MAX(w.commit_date_time), "
+            + "SUM(w.working_hours), :now FROM work_log w WHERE " + String.format(KEY_MATCH, "w")
+            + " AND w.commit_date_time >= :dayStart AND w.commit_date_time < :dayEnd HAVING COUNT(*) > 0";
+    private static final String DELETE_ALL = "DELETE FROM work_log_daily";
+    private static final String INSERT_ALL = "INSERT INTO work_log_daily (git_url, branch_name, author_name, work_date, commit_count, "
+            + "first_commit_time, last_commit_time, working_hours, update_date_time) "
+            + "SELECT w.git_url, w.branch_name, w.author_name, CAST(w.commit_date_time AS date), COUNT(*), MIN(w.commit_date_time), "
+            + "MAX(w.commit_date_time), SUM(w.working_hours), :now FROM work_log w WHERE w.commit_date_time IS NOT NULL "
+            + "GROUP BY w.git_url, w.branch_name, w.author_name, CAST(w.commit_date_time AS date)";
+    private static final String COUNT_ROLLUP = "SELECT COUNT(*) FROM work_log_daily";
+    private static final String EXISTS_WORK_LOG = "SELECT CASE WHEN EXISTS (SELECT 1 FROM work_log) THEN 1 ELSE 0 END";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public WorkLogRollupWriter(NamedParameterJdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * 重算指定組別；需在 WorkLog 寫入的交易內呼叫
+     */
+    public void refresh(Collection<DayKey> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<MapSqlParameterSource> params = new ArrayList<>(keys.size());
+        for (DayKey key : keys) {
+            params.add(new MapSqlParameterSource()
+                    .addValue("gitUrl", key.gitUrl, Types.VARCHAR)
+                    .addValue("branchName", key.branchName, Types.VARCHAR)
+                    .addValue("authorName", key.authorName, Types.VARCHAR)
+                    .addValue("workDate", Date.valueOf(key.workDate), Types.DATE)
+                    .addValue("dayStart", Timestamp.valueOf(key.workDate.atStartOfDay()), Types.TIMESTAMP)
+                    .addValue("dayEnd", Timestamp.valueOf(key.workDate.plusDays(1).atStartOfDay()), Types.TIMESTAMP)
+                    .addValue("now", now, Types.TIMESTAMP));
+        }
+        MapSqlParameterSource[] batch = params.toArray(new MapSqlParameterSource[0]);
+        jdbcTemplate.batchUpdate(DELETE_DAY, batch);
+        jdbcTemplate.batchUpdate(INSERT_DAY, batch);
+    }
+
+    /**
+     * 由 WorkLog 完整重建
+     * @return 重建後的彙總列數
+     */
+    public int rebuild() {
+        Integer rows = transactionTemplate.execute(status -> {
+            jdbcTemplate.update(DELETE_ALL, new MapSqlParameterSource());
+            return jdbcTemplate.update(INSERT_ALL, new MapSqlParameterSource("now", Timestamp.valueOf(LocalDateTime.now())));
+        });
+        return rows != null ? rows : 0;
+    }
+
+    /**
+     * 啟動時若彙總表為空但 WorkLog 已有資料（例如升級後第一次啟動），先完整重建一次
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        if (needsRebuild()) {
+            log.info("Rebuilt WorkLogDaily rollup: {} rows", rebuild());
+        }
+    }
+
+    /**
+     * 彙總表為空但 WorkLog 已有資料
+     */
+    public boolean needsRebuild() {
+        MapSqlParameterSource none = new MapSqlParameterSource();
+        Long rollupRows = jdbcTemplate.queryForObject(COUNT_ROLLUP, none, Long.class);
+        if (rollupRows != null && rollupRows > 0) {
+            return false;
+        }
+        Long workLogRows = jdbcTemplate.queryForObject(EXISTS_WORK_LOG, none, Long.class);
+        return workLogRows != null && workLogRows > 0;
+    }
+
+    /**
+     * 彙總組別：(gitUrl, 分支, 作者, 日期)
+     */
+    public static class DayKey {
+        private final String gitUrl;
+        private final String branchName;
+        private final String authorName;
+        private final LocalDate workDate;
+
+        public DayKey(String gitUrl, String branchName, String authorName, LocalDate workDate) {
+            this.gitUrl = gitUrl;
+            this.branchName = branchName;
+            this.authorName = authorName;
+            this.workDate = workDate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DayKey)) {
+                return false;
+            }
+            DayKey other = (DayKey) o;
+            return Objects.equals(gitUrl, other.gitUrl) && Objects.equals(branchName, other.branchName)
+                    && Objects.equals(authorName, other.authorName) && workDate.equals(other.workDate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(gitUrl, branchName, authorName, workDate);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.gitsync.repository;
+
+import com.example.gitsync.model.WorkLog;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * WorkLog 查詢條件，交由資料庫篩選，不必把整張表載入記憶體。
+ * 參數為 null 或空字串時回傳 null，Specification.where / and 會略過該條件。
+ */
+public final class WorkLogSpecifications {
+
+    private WorkLogSpecifications() {
+    }
+
+    /**
+     * 組合搜尋頁面的所有條件（文字欄位為部分比對，日期為含頭含尾的日期區間）
+     */
+    public static Specification<WorkLog> search(String commitHash, String authorName, String branchName, String message,
+                                                Double workingHours, LocalDate dateFrom, LocalDate dateTo) {
+        return Specification.where(contains("commitHash", commitHash))
+                .and(contains("authorName", authorName))
+                .and(contains("branchName", branchName))
+                .and(contains("message", message))
+                .and(workingHoursEquals(workingHours))
+                .and(commitDateFrom(dateFrom))
+                .and(commitDateTo(dateTo));
+    }
+
+    public static Specification<WorkLog> contains(String attribute, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        String pattern = "%" + escapeLike(value) + "%";
+        return (root, query, cb) -> cb.like(root.get(attribute), pattern, '\\');
+    }
+
+    public static Specification<WorkLog> workingHoursEquals(Double workingHours) {
+        if (workingHours == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("workingHours"), workingHours);
+    }
+
+    /**
+     * 以時間範圍比較而非取日期部分，CommitDateTime 索引才用得上
+     */
+    public static Specification<WorkLog> commitDateFrom(LocalDate dateFrom) {
+        if (dateFrom == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("commitDateTime"), dateFrom.atStartOfDay());
+    }
+
+    public static Specification<WorkLog> commitDateTo(LocalDate dateTo) {
+        if (dateTo == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.lessThan(root.get("commitDateTime"), dateTo.plusDays(1).atStartOfDay());
+    }
+
+    public static Specification<WorkLog> gitUrlEquals(String gitUrl) {
+        return (root, query, cb) -> cb.equal(root.get("gitUrl"), gitUrl);
+    }
+
+    public static Specification<WorkLog> branchNameIn(Collection<String> branchNames) {
+        if (branchNames == null || branchNames.isEmpty()) {
+            return null;
+        }
+        return (root, query, cb) -> root.get("branchName").in(branchNames);
+    }
+
+    public static Specification<WorkLog> commitDateTimeBetween(LocalDateTime from, LocalDateTime to) {
+        return (root, query, cb) -> cb.between(root.get("commitDateTime"), from, to);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_").replace("[", "\\[");
+    }
+}
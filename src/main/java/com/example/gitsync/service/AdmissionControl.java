@@ -0,0 +1,153 @@
+package com.example.gitsync.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * clone / fetch / 走訪類請求的准入控制：
+ * 1. 同時執行的請求數以 semaphore 限制。
+ * 2. 已達上限時最多 max-queue 個請求排隊等待，佇列已滿立即拒絕（429），等待超過 max-wait-seconds 也拒絕（503），
+ *    兩者都帶 Retry-After。
+ * 3. 每個請求另有 commit 數與大小的上限（{@link WalkBudget}），超過即中止走訪，不影響其他請求。
+ */
+@Component
+public class AdmissionControl {
+
+    private final int maxConcurrent;
+    private final int maxQueue;
+    private final long maxWaitMillis;
+    private final long retryAfterSeconds;
+    private final long maxCommitsPerRequest;
+    private final long maxBytesPerRequest;
+
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong rejectedTimeout = new AtomicLong();
+
+    public AdmissionControl(@Value("${gitsync.admission.max-concurrent:4}") int maxConcurrent,
+                            @Value("${gitsync.admission.max-queue:16}") int maxQueue,
+                            @Value("${gitsync.admission.max-wait-seconds:30}") long maxWaitSeconds,
+                            @Value("${gitsync.admission.retry-after-seconds:30}") long retryAfterSeconds,
+                            @Value("${gitsync.admission.max-commits-per-request:500000}") long maxCommitsPerRequest,
+                            @Value("${gitsync.admission.max-size-mb-per-request:512}") long maxSizeMbPerRequest) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWaitMillis = Math.max(0, maxWaitSeconds) * 1000;
+        this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+        this.maxCommitsPerRequest = Math.max(0, maxCommitsPerRequest);
+        this.maxBytesPerRequest = Math.max(0, maxSizeMbPerRequest) * 1024 * 1024;
+        this.permits = new Semaphore(this.maxConcurrent, true);
+    }
+
+    /**
+     * 取得執行名額，必要時排隊等待；回傳的 Ticket 使用完畢務必 close
+     * @throws AdmissionRejectedException 佇列已滿或等待逾時
+     */
+    public Ticket admit() {
+        // 不帶逾時的 tryAcquire 會插隊，計時版本才遵守公平順序，新的請求不會搶走排隊中請求的名額
+        if (!tryAcquire(0)) {
+            if (waiting.incrementAndGet() > maxQueue) {
+                waiting.decrementAndGet();
+                rejectedQueueFull.incrementAndGet();
+                throw new AdmissionRejectedException(AdmissionRejectedException.STATUS_QUEUE_FULL, retryAfterSeconds,
+                        "同時執行的請求已達上限，等待佇列已滿，請稍後再試");
+            }
+            try {
+                if (!tryAcquire(maxWaitMillis)) {
+                    rejectedTimeout.incrementAndGet();
+                    throw new AdmissionRejectedException(AdmissionRejectedException.STATUS_WAIT_TIMEOUT, retryAfterSeconds,
+                            "同時執行的請求已達上限，等待逾時，請稍後再試");
+                }
+            } finally {
+                waiting.decrementAndGet();
+            }
+        }
+        admitted.incrementAndGet();
+        return new Ticket();
+    }
+
+    private boolean tryAcquire(long timeoutMillis) {
+        try {
+            return permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AdmissionRejectedException(AdmissionRejectedException.STATUS_WAIT_TIMEOUT, retryAfterSeconds, "等待執行時被中斷");
+        }
+    }
+
+    /**
+     * 新的單次請求走訪上限
+     */
+    public WalkBudget newBudget() {
+        return new WalkBudget(maxCommitsPerRequest, maxBytesPerRequest);
+    }
+
+    public Stats stats() {
+        return new Stats(maxConcurrent, maxConcurrent - permits.availablePermits(), waiting.get(),
+                admitted.get(), rejectedQueueFull.get(), rejectedTimeout.get());
+    }
+
+    /**
+     * 執行名額；close 可重複呼叫，只釋放一次
+     */
+    public class Ticket implements AutoCloseable {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    public static class Stats {
+        private final int maxConcurrent;
+        private final int active;
+        private final int waiting;
+        private final long admitted;
+        private final long rejectedQueueFull;
+        private final long rejectedTimeout;
+
+        Stats(int maxConcurrent, int active, int waiting, long admitted, long rejectedQueueFull, long rejectedTimeout) {
+            this.maxConcurrent = maxConcurrent;
+            this.active = active;
+            this.waiting = waiting;
+            this.admitted = admitted;
+            this.rejectedQueueFull = rejectedQueueFull;
+            this.rejectedTimeout = rejectedTimeout;
+        }
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public int getActive() {
+            return active;
+        }
+
+        public int getWaiting() {
+            return waiting;
+        }
+
+        public long getAdmitted() {
+            return admitted;
+        }
+
+        public long getRejectedQueueFull() {
+            return rejectedQueueFull;
+        }
+
+        public long getRejectedTimeout() {
+            return rejectedTimeout;
+        }
+    }
+}
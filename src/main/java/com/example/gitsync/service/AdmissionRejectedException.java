@@ -0,0 +1,32 @@
+package com.example.gitsync.service;
+
+/**
+ * 同時執行的 clone / 走訪數已達上限，請求未被接受
+ */
+public class AdmissionRejectedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** 等待佇列已滿，回應 429 */
+    public static final int STATUS_QUEUE_FULL = 429;
+    /** 已排隊但等待逾時，回應 503 */
+    public static final int STATUS_WAIT_TIMEOUT = 503;
+
+    private final int status;
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(int status, long retryAfterSeconds, String message) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /** 建議的重試秒數（Retry-After） */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
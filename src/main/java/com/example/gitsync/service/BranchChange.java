@@ -0,0 +1,49 @@
+package com.example.gitsync.service;
+
+/**
+ * 遠端分支頂端（ls-remote）與上次同步水位的比較結果
+ */
+public class BranchChange {
+    /** 尚未同步過 */
+    public static final String STATUS_NEW = "NEW";
+    /** 遠端頂端與上次同步不同，或要求的起始時間早於已同步範圍 */
+    public static final String STATUS_CHANGED = "CHANGED";
+    public static final String STATUS_UNCHANGED = "UNCHANGED";
+    /** 曾經同步過，但遠端已沒有此分支 */
+    public static final String STATUS_DELETED = "DELETED";
+
+    private final String branch;
+    private final String remoteTip;
+    private final String syncedTip;
+    private final String status;
+
+    public BranchChange(String branch, String remoteTip, String syncedTip, String status) {
+        this.branch = branch;
+        this.remoteTip = remoteTip;
+        this.syncedTip = syncedTip;
+        this.status = status;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public String getRemoteTip() {
+        return remoteTip;
+    }
+
+    public String getSyncedTip() {
+        return syncedTip;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    /**
+     * 是否需要 fetch 並重新走訪
+     */
+    public boolean needsSync() {
+        return STATUS_NEW.equals(status) || STATUS_CHANGED.equals(status);
+    }
+}
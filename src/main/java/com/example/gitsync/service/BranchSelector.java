@@ -0,0 +1,67 @@
+package com.example.gitsync.service;
+
+import org.eclipse.jgit.lib.Constants;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 依使用者指定的分支與 gitsync.branch.excludes 設定，從遠端分支清單中挑出要處理的分支。
+ * clone（mirror）與 GitLab API 兩種資料來源共用同一套規則。
+ */
+@Component
+public class BranchSelector {
+
+    private final Set<String> excludedBranches;
+
+    public BranchSelector(@Value("${gitsync.branch.excludes:}") String[] excludedBranches) {
+        this.excludedBranches = new HashSet<>(Arrays.asList(excludedBranches));
+    }
+
+    /**
+     * @param remoteBranches 遠端分支名稱（不含 refs/heads/ 前綴）
+     * @param in_branches 指定的分支，null 或空清單表示全部
+     * @return 依 remoteBranches 順序排列的分支名稱
+     */
+    public List<String> select(Collection<String> remoteBranches, List<String> in_branches) {
+        Set<String> requested = null;
+        if (in_branches != null && !in_branches.isEmpty()) {
+            // 支援 in_branches 傳入 refs/remotes/origin/x、origin/x、refs/heads/x 或 x
+            requested = new HashSet<>();
+            for (String b : in_branches) {
+                requested.add(simpleBranchName(b));
+            }
+        }
+        List<String> selected = new ArrayList<>();
+        for (String branch : remoteBranches) {
+            if (requested != null && !requested.contains(branch)) {
+                continue;
+            }
+            if (excludedBranches.contains(branch)) {
+                continue;
+            }
+            selected.add(branch);
+        }
+        return selected;
+    }
+
+    public static String simpleBranchName(String branch) {
+        String name = branch.trim();
+        if (name.startsWith(GitMirrorStore.REMOTE_BRANCH_PREFIX)) {
+            return name.substring(GitMirrorStore.REMOTE_BRANCH_PREFIX.length());
+        }
+        if (name.startsWith(Constants.R_HEADS)) {
+            return name.substring(Constants.R_HEADS.length());
+        }
+        if (name.startsWith(Constants.DEFAULT_REMOTE_NAME + "/")) {
+            return name.substring(Constants.DEFAULT_REMOTE_NAME.length() + 1);
+        }
+        return name;
+    }
+}
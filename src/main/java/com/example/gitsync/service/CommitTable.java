@@ -0,0 +1,347 @@
+package com.example.gitsync.service;
+
+import com.example.gitsync.model.GitCommit;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 報表用的唯讀欄式 commit 表。
+ * 報表只需要作者、作者時間、短訊息與短 hash，因此不保留 RevCommit（原始內容緩衝與父節點連結），
+ * 改以平行的基本型別陣列存放：
+ * 1. 作者時間（epoch 秒）與依系統時區換算好的日期（epoch day），產生報表時不必再解析 commit header
+ * 2. 作者以字典編號表示，相同作者只存一份字串
+ * 3. 短 hash 以 ASCII bytes 存放，短訊息全部串接在同一個 char 緩衝區，以 offset 取出
+ * 4. 每個分支一個 bitset，記錄哪些列屬於該分支；同一個 commit 出現在多個分支時只存一列
+ * 5. 合併多個倉庫時（{@link #merge}），每個分支另記錄所屬倉庫，報表以倉庫作為額外的分組維度
+ * 列的順序與加入順序相同（clone 來源為 commit time 由新到舊）。
+ */
+public final class CommitTable {
+
+    public static final int SHORT_HASH_LENGTH = 7;
+
+    private final int size;
+    private final long[] epochSeconds;
+    private final int[] epochDays;
+    private final int[] authorIds;
+    private final String[] authors;
+    private final byte[] shortHashes;
+    private final char[] messages;
+    private final int[] messageOffsets;
+    private final String[] branchNames;
+    /** 各分支所屬倉庫；單一倉庫的表為 null */
+    private final String[] branchRepos;
+    private final BitSet[] branchRows;
+
+    private CommitTable(Builder builder) {
+        this.size = builder.size;
+        this.epochSeconds = Arrays.copyOf(builder.epochSeconds, size);
+        this.epochDays = Arrays.copyOf(builder.epochDays, size);
+        this.authorIds = Arrays.copyOf(builder.authorIds, size);
+        this.authors = builder.authors.toArray(new String[0]);
+        this.shortHashes = Arrays.copyOf(builder.shortHashes, size * SHORT_HASH_LENGTH);
+        this.messages = builder.messages.toString().toCharArray();
+        this.messageOffsets = Arrays.copyOf(builder.messageOffsets, size + 1);
+        this.branchNames = builder.branchNames.toArray(new String[0]);
+        this.branchRepos = builder.withRepos ? builder.branchRepos.toArray(new String[0]) : null;
+        this.branchRows = builder.branchRows.toArray(new BitSet[0]);
+    }
+
+    /**
+     * @param branchNames 分支名稱，依報表輸出順序
+     */
+    public static Builder builder(List<String> branchNames) {
+        return new Builder(branchNames);
+    }
+
+    /**
+     * 由不分分支的 RevCommit 清單建立（工時報告）
+     */
+    public static CommitTable fromRevCommits(List<RevCommit> commits) {
+        Builder builder = new Builder(Collections.<String>emptyList());
+        for (RevCommit commit : commits) {
+            builder.add(-1, commit);
+        }
+        return builder.build();
+    }
+
+    /**
+     * 由各分支的 GitCommit 建立（GitLab API / 資料庫來源，commitDate 為作者時間）
+     */
+    public static CommitTable fromGitCommits(Map<String, List<GitCommit>> branchCommitsMap) {
+        Builder builder = new Builder(new ArrayList<>(branchCommitsMap.keySet()));
+        ZoneId zone = ZoneId.systemDefault();
+        int branch = 0;
+        for (List<GitCommit> commits : branchCommitsMap.values()) {
+            for (GitCommit commit : commits) {
+                builder.add(branch, commit.getCommitId(), commit.getAuthor(),
+                        commit.getCommitDate().atZone(zone).toEpochSecond(), shortMessage(commit.getMessage()));
+            }
+            branch++;
+        }
+        return builder.build();
+    }
+
+    /**
+     * 取 commit 訊息第一段並合併為單行（與 RevCommit.getShortMessage 相同）
+     */
+    public static String shortMessage(String message) {
+        if (message == null) {
+            return "";
+        }
+        int end = message.indexOf("\n\n");
+        return (end >= 0 ? message.substring(0, end) : message).trim().replace('\n', ' ');
+    }
+
+    /**
+     * 合併多個倉庫的表：列與分支依倉庫順序接續，每個分支標記所屬倉庫。
+     * 不同倉庫的相同 commit（例如 fork）分別保留，各自計入所屬倉庫。
+     * @param repoNames 倉庫名稱，與 tables 一一對應
+     */
+    public static CommitTable merge(List<String> repoNames, List<CommitTable> tables) {
+        Builder builder = new Builder(Collections.<String>emptyList());
+        builder.withRepos = true;
+        for (int t = 0; t < tables.size(); t++) {
+            CommitTable table = tables.get(t);
+            int base = builder.size;
+            for (int row = 0; row < table.size; row++) {
+                builder.appendRow(table.shortHash(row), table.author(row), table.epochSeconds[row], table.shortMessage(row));
+            }
+            for (int branch = 0; branch < table.branchNames.length; branch++) {
+                int merged = builder.addBranch(table.branchNames[branch], repoNames.get(t));
+                BitSet rows = table.branchRows[branch];
+                for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                    builder.markBranch(merged, base + row);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int branchCount() {
+        return branchNames.length;
+    }
+
+    public String branchName(int branch) {
+        return branchNames[branch];
+    }
+
+    /**
+     * 屬於該分支的列（複本）
+     */
+    BitSet branchRows(int branch) {
+        return (BitSet) branchRows[branch].clone();
+    }
+
+    /**
+     * 是否為多個倉庫合併的表（報表需顯示倉庫欄）
+     */
+    public boolean hasRepos() {
+        return branchRepos != null;
+    }
+
+    /**
+     * @return 分支所屬倉庫；單一倉庫的表回傳 null
+     */
+    public String repoName(int branch) {
+        return branchRepos != null ? branchRepos[branch] : null;
+    }
+
+    public String author(int row) {
+        return authors[authorIds[row]];
+    }
+
+    public long epochSecond(int row) {
+        return epochSeconds[row];
+    }
+
+    /**
+     * 作者時間（系統時區）
+     */
+    public LocalDateTime dateTime(int row) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(epochSeconds[row]), ZoneId.systemDefault());
+    }
+
+    /**
+     * 作者日期（系統時區）
+     */
+    public LocalDate date(int row) {
+        return LocalDate.ofEpochDay(epochDays[row]);
+    }
+
+    public String shortHash(int row) {
+        return new String(shortHashes, row * SHORT_HASH_LENGTH, SHORT_HASH_LENGTH, StandardCharsets.US_ASCII).trim();
+    }
+
+    public String shortMessage(int row) {
+        return new String(messages, messageOffsets[row], messageOffsets[row + 1] - messageOffsets[row]);
+    }
+
+    /**
+     * 依分支→作者→日期分組，每組一次呼叫 visitor；作者依名稱、日期由舊到新排序，組內的列維持原順序
+     */
+    public <E extends Exception> void forEachAuthorDay(int branch, GroupVisitor<E> visitor) throws E {
+        Map<Long, IntList> groups = new HashMap<>();
+        BitSet rows = branchRows[branch];
+        for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+            long key = ((long) authorIds[row] << 32) | (epochDays[row] & 0xffffffffL);
+            groups.computeIfAbsent(key, k -> new IntList()).add(row);
+        }
+        List<Map.Entry<Long, IntList>> ordered = new ArrayList<>(groups.entrySet());
+        ordered.sort(Comparator.<Map.Entry<Long, IntList>, String>comparing(e -> authors[(int) (e.getKey() >>> 32)])
+                .thenComparingInt(e -> (int) e.getKey().longValue()));
+        for (Map.Entry<Long, IntList> group : ordered) {
+            int[] groupRows = group.getValue().toArray();
+            visitor.visit(author(groupRows[0]), date(groupRows[0]), groupRows);
+        }
+    }
+
+    @FunctionalInterface
+    public interface GroupVisitor<E extends Exception> {
+        void visit(String author, LocalDate date, int[] rows) throws E;
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    /**
+     * 依序加入 commit；同一個 commit id 再次加入時只標記所屬分支
+     */
+    public static final class Builder {
+        private final List<String> branchNames;
+        private final List<String> branchRepos = new ArrayList<>();
+        private boolean withRepos;
+        private final List<BitSet> branchRows = new ArrayList<>();
+        private final Map<String, Integer> rowByCommitId = new HashMap<>();
+        private final Map<String, Integer> authorIdByName = new LinkedHashMap<>();
+        private final List<String> authors = new ArrayList<>();
+        private final StringBuilder messages = new StringBuilder();
+        private final ZoneRules zoneRules = ZoneId.systemDefault().getRules();
+        private long[] epochSeconds = new long[64];
+        private int[] epochDays = new int[64];
+        private int[] authorIds = new int[64];
+        private byte[] shortHashes = new byte[64 * SHORT_HASH_LENGTH];
+        private int[] messageOffsets = new int[65];
+        private int size;
+
+        private Builder(List<String> branchNames) {
+            this.branchNames = new ArrayList<>();
+            for (String branchName : branchNames) {
+                addBranch(branchName, null);
+            }
+        }
+
+        public Builder add(int branch, RevCommit commit) {
+            Integer existing = rowByCommitId.get(commit.getName());
+            if (existing != null) {
+                markBranch(branch, existing);
+                return this;
+            }
+            PersonIdent author = commit.getAuthorIdent();
+            return add(branch, commit.getName(), author.getName(), author.getWhen().getTime() / 1000, commit.getShortMessage());
+        }
+
+        /**
+         * @param branch 分支索引（對應 builder 的 branchNames），-1 表示不屬於任何分支
+         * @param epochSecond 作者時間
+         */
+        public Builder add(int branch, String commitId, String author, long epochSecond, String shortMessage) {
+            Integer existing = rowByCommitId.get(commitId);
+            if (existing != null) {
+                markBranch(branch, existing);
+                return this;
+            }
+            int row = appendRow(commitId, author, epochSecond, shortMessage);
+            rowByCommitId.put(commitId, row);
+            markBranch(branch, row);
+            return this;
+        }
+
+        public CommitTable build() {
+            return new CommitTable(this);
+        }
+
+        int addBranch(String branchName, String repoName) {
+            branchNames.add(branchName);
+            branchRepos.add(repoName);
+            branchRows.add(new BitSet());
+            return branchNames.size() - 1;
+        }
+
+        /**
+         * 加入一列（不檢查重複）
+         * @return 列索引
+         */
+        int appendRow(String commitId, String author, long epochSecond, String shortMessage) {
+            if (author == null) {
+                author = "";
+            }
+            ensureCapacity(size + 1);
+            int row = size++;
+            epochSeconds[row] = epochSecond;
+            ZoneOffset offset = zoneRules.getOffset(Instant.ofEpochSecond(epochSecond));
+            epochDays[row] = (int) Math.floorDiv(epochSecond + offset.getTotalSeconds(), 86400L);
+            authorIds[row] = authorIdByName.computeIfAbsent(author, name -> {
+                authors.add(name);
+                return authors.size() - 1;
+            });
+            for (int i = 0; i < SHORT_HASH_LENGTH; i++) {
+                shortHashes[row * SHORT_HASH_LENGTH + i] = (byte) (i < commitId.length() ? commitId.charAt(i) : ' ');
+            }
+            messages.append(shortMessage != null ? shortMessage : "");
+            messageOffsets[row + 1] = messages.length();
+            return row;
+        }
+
+        void markBranch(int branch, int row) {
+            if (branch >= 0) {
+                branchRows.get(branch).set(row);
+            }
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= epochSeconds.length) {
+                return;
+            }
+            int newCapacity = Math.max(capacity, epochSeconds.length * 2);
+            epochSeconds = Arrays.copyOf(epochSeconds, newCapacity);
+            epochDays = Arrays.copyOf(epochDays, newCapacity);
+            authorIds = Arrays.copyOf(authorIds, newCapacity);
+            shortHashes = Arrays.copyOf(shortHashes, newCapacity * SHORT_HASH_LENGTH);
+            messageOffsets = Arrays.copyOf(messageOffsets, newCapacity + 1);
+        }
+    }
+}
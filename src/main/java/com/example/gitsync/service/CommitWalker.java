@@ -0,0 +1,428 @@
+package com.example.gitsync.service;
+
+import org.eclipse.jgit.errors.StopWalkException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.AndRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * commit 走訪引擎。
+ * 依 commit time 由新到舊走訪，日期區間與 merge 篩選都在 RevWalk 內完成，
+ * 一旦 commit time 早於起始時間（扣除時鐘誤差容許值）就停止走訪，不必讀完整個歷史。
+ */
+@Component
+public class CommitWalker {
+
+    private final long clockSkewSeconds;
+    private final boolean parallel;
+    private final ForkJoinPool walkPool;
+
+    public CommitWalker(@Value("${gitsync.walk.clock-skew-minutes:1440}") long clockSkewMinutes,
+                        @Value("${gitsync.walk.mode:shared}") String mode,
+                        @Value("${gitsync.walk.parallelism:4}") int parallelism) {
+        this.clockSkewSeconds = clockSkewMinutes * 60;
+        this.parallel = "parallel".equalsIgnoreCase(mode);
+        this.walkPool = parallel ? new ForkJoinPool(Math.max(1, parallelism)) : null;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (walkPool != null) {
+            walkPool.shutdownNow();
+        }
+    }
+
+    /**
+     * 走訪 tip 可達、且作者時間落在 [effdate, expdate] 之間的非 merge commit
+     * @param uninteresting 不需走訪的 commit（及其祖先），可為 null
+     * @param expdate 結束時間，null 表示不限制
+     * @param retainBody 是否保留 commit 內容；只需要 commit id / 時間時傳 false 以節省記憶體
+     */
+    public List<RevCommit> walk(Repository repository, AnyObjectId tip, AnyObjectId uninteresting,
+                                LocalDateTime effdate, LocalDateTime expdate, boolean retainBody) throws IOException {
+        List<RevCommit> commits = new ArrayList<>();
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.sort(RevSort.COMMIT_TIME_DESC);
+            walk.setRetainBody(retainBody);
+            walk.setRevFilter(dateRangeFilter(effdate, expdate));
+            walk.markStart(walk.parseCommit(tip));
+            if (uninteresting != null) {
+                walk.markUninteresting(walk.parseCommit(uninteresting));
+            }
+            for (RevCommit commit : walk) {
+                commits.add(commit);
+            }
+        }
+        return commits;
+    }
+
+    /**
+     * 以單一 RevWalk 同時走訪多個分支，每個 commit 只解析一次，並以 bitset 記錄哪些分支可到達該 commit。
+     * 符合條件的 commit 走訪到時即寫入 CommitTable 的欄位並釋放 commit 內容，走訪結束後再依 bitset 標記各分支的列，
+     * 走訪期間不保留 commit 內容。
+     * @param budget 保留的 commit 數與大小上限，超過時丟出 WalkBudgetExceededException 中止走訪
+     * @return 分支名稱（refs/remotes/origin/...）依傳入分支順序排列，沒有 commit 的分支不列出
+     */
+    public CommitTable walkBranches(Repository repository, List<Ref> branches,
+                                    LocalDateTime effdate, LocalDateTime expdate, WalkBudget budget) throws IOException {
+        if (parallel && branches.size() > 1) {
+            return walkBranchesInParallel(repository, branches, effdate, expdate, budget);
+        }
+        return walkShared(repository, branches, effdate, expdate, budget);
+    }
+
+    /**
+     * 平行模式：把分支切成 parallelism 份交給 ForkJoinPool，
+     * 每個 worker 使用自己的 RevWalk / ObjectReader 走訪共用的倉庫，完成後依 commit id 合併各自的表。
+     * 多個 worker 都走訪到的 commit 只計入 budget 一次，合併後也只保留一列。
+     */
+    private CommitTable walkBranchesInParallel(Repository repository, List<Ref> branches,
+                                               LocalDateTime effdate, LocalDateTime expdate, WalkBudget budget) throws IOException {
+        int chunks = Math.min(walkPool.getParallelism(), branches.size());
+        int chunkSize = (branches.size() + chunks - 1) / chunks;
+        Set<ObjectId> charged = ConcurrentHashMap.newKeySet();
+        List<ChunkRows> chunkRows = new ArrayList<>();
+        List<ForkJoinTask<CommitTable>> tasks = new ArrayList<>();
+        for (int start = 0; start < branches.size(); start += chunkSize) {
+            List<Ref> chunk = branches.subList(start, Math.min(start + chunkSize, branches.size()));
+            ChunkRows rows = new ChunkRows();
+            chunkRows.add(rows);
+            tasks.add(walkPool.submit(() -> walkShared(repository, chunk, effdate, expdate, budget, charged, rows)));
+        }
+        List<CommitTable> tables = new ArrayList<>();
+        try {
+            for (ForkJoinTask<CommitTable> task : tasks) {
+                tables.add(task.get());
+            }
+        } catch (InterruptedException e) {
+            tasks.forEach(t -> t.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("走訪被中斷", e);
+        } catch (ExecutionException e) {
+            tasks.forEach(t -> t.cancel(true));
+            // ForkJoinTask 以 RuntimeException 包裝 Callable 丟出的受檢例外，需取出原本的例外（例如 WalkBudgetExceededException）
+            Throwable cause = e.getCause();
+            while (cause instanceof RuntimeException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+        return mergeChunks(tables, chunkRows);
+    }
+
+    /**
+     * 合併平行走訪各 worker 的表：相同 commit id 只保留一列，並標記於所有可到達它的分支（各 worker 的分支 bitset 合併）。
+     * 列依 commit time 由新到舊合併各 worker 的走訪順序（相同時間依 worker 順序），與共用走訪的列順序一致；
+     * 分支依原分支順序排列。
+     */
+    private static CommitTable mergeChunks(List<CommitTable> tables, List<ChunkRows> chunkRows) {
+        if (tables.size() == 1) {
+            return tables.get(0);
+        }
+        CommitTable.Builder builder = CommitTable.builder(Collections.<String>emptyList());
+        Map<String, Integer> mergedRows = new HashMap<>();
+        int[][] rowMap = new int[tables.size()][];
+        int[] next = new int[tables.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(
+                Comparator.comparingInt((Integer t) -> -chunkRows.get(t).commitTimes[next[t]]).thenComparingInt(t -> t));
+        for (int t = 0; t < tables.size(); t++) {
+            rowMap[t] = new int[tables.get(t).size()];
+            if (rowMap[t].length > 0) {
+                heads.add(t);
+            }
+        }
+        while (!heads.isEmpty()) {
+            int t = heads.poll();
+            int row = next[t]++;
+            CommitTable table = tables.get(t);
+            String commitId = chunkRows.get(t).commitIds.get(row);
+            Integer merged = mergedRows.get(commitId);
+            if (merged == null) {
+                merged = builder.appendRow(commitId, table.author(row), table.epochSecond(row), table.shortMessage(row));
+                mergedRows.put(commitId, merged);
+            }
+            rowMap[t][row] = merged;
+            if (next[t] < table.size()) {
+                heads.add(t);
+            }
+        }
+        for (int t = 0; t < tables.size(); t++) {
+            CommitTable table = tables.get(t);
+            for (int branch = 0; branch < table.branchCount(); branch++) {
+                int mergedBranch = builder.addBranch(table.branchName(branch), null);
+                BitSet rows = table.branchRows(branch);
+                for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+                    builder.markBranch(mergedBranch, rowMap[t][row]);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private CommitTable walkShared(Repository repository, List<Ref> branches,
+                                   LocalDateTime effdate, LocalDateTime expdate, WalkBudget budget) throws IOException {
+        return walkShared(repository, branches, effdate, expdate, budget, null, null);
+    }
+
+    /**
+     * @param charged 平行走訪時所有 worker 共用的已計入 budget 的 commit，每個 commit 只計入一次；共用走訪為 null
+     * @param chunkRows 平行走訪時記錄每列的完整 commit id 與 commit time，供合併時使用；共用走訪為 null
+     */
+    private CommitTable walkShared(Repository repository, List<Ref> branches, LocalDateTime effdate, LocalDateTime expdate,
+                                   WalkBudget budget, Set<ObjectId> charged, ChunkRows chunkRows) throws IOException {
+        long from = toEpochSecond(effdate);
+        long to = toEpochSecond(expdate);
+        long stopBefore = from - clockSkewSeconds;
+        CommitTable.Builder builder = CommitTable.builder(Collections.<String>emptyList());
+        // 第 i 列的分支 bitset；走訪結束前仍可能因時鐘誤差補上分支，因此最後才標記
+        List<BitSet> rowBranches = new ArrayList<>();
+        try (RevWalk walk = new BranchRevWalk(repository)) {
+            walk.sort(RevSort.COMMIT_TIME_DESC);
+            for (int i = 0; i < branches.size(); i++) {
+                BranchCommit tip = (BranchCommit) walk.parseCommit(branches.get(i).getObjectId());
+                tip.branches.set(i);
+                walk.markStart(tip);
+            }
+            // 不設定 RevFilter：merge 與區間外的 commit 也要走訪，才能把分支 bit 傳給祖先
+            RevCommit next;
+            while ((next = walk.next()) != null) {
+                BranchCommit commit = (BranchCommit) next;
+                if (commit.getCommitTime() < stopBefore) {
+                    break;
+                }
+                commit.visited = true;
+                propagate(commit);
+                long authorTime = commit.getAuthorIdent().getWhen().getTime() / 1000;
+                if (commit.getParentCount() <= 1 && authorTime >= from && authorTime <= to) {
+                    if (charged == null || charged.add(commit.copy())) {
+                        budget.charge(commit);
+                    }
+                    builder.appendRow(commit.getName(), commit.getAuthorIdent().getName(), authorTime, commit.getShortMessage());
+                    rowBranches.add(commit.branches);
+                    if (chunkRows != null) {
+                        chunkRows.add(commit.getName(), commit.getCommitTime());
+                    }
+                }
+                commit.disposeBody();
+            }
+        }
+        BitSet reached = new BitSet();
+        for (BitSet bits : rowBranches) {
+            reached.or(bits);
+        }
+        int[] tableBranch = new int[branches.size()];
+        for (int i = 0; i < branches.size(); i++) {
+            tableBranch[i] = reached.get(i) ? builder.addBranch(branches.get(i).getName(), null) : -1;
+        }
+        for (int row = 0; row < rowBranches.size(); row++) {
+            BitSet bits = rowBranches.get(row);
+            for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+                builder.markBranch(tableBranch[i], row);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 串流走訪：與 walkBranches 相同以單一 RevWalk 走訪多個分支，但每個符合條件的 commit 走訪到時立即交給 visitor，
+     * 交出後即釋放 commit 內容，不累積結果清單；visitor 阻塞（例如寫給慢速用戶端）時走訪也隨之暫停。
+     * 每個 commit 只交出一次，branch 為可到達該 commit 的分支中依傳入順序的第一個。
+     * 記憶體並非固定：RevWalk 為去除重複，會保留每個已走訪 commit 的物件（不含內容）與分支 bitset 直到走訪結束，
+     * 因此已走訪的 commit 數（含 merge 與區間外的 commit）受 budget 限制。
+     * @param effdate 起始時間，null 表示走訪完整歷史
+     * @param expdate 結束時間，null 表示不限制
+     * @param budget 已走訪 commit 的數量上限，超過時丟出 WalkBudgetExceededException
+     * @return 交給 visitor 的 commit 數
+     */
+    public long streamBranches(Repository repository, List<Ref> branches, LocalDateTime effdate, LocalDateTime expdate,
+                               WalkBudget budget, CommitVisitor visitor) throws IOException {
+        long from = effdate != null ? toEpochSecond(effdate) : Long.MIN_VALUE;
+        long to = expdate != null ? toEpochSecond(expdate) : Long.MAX_VALUE;
+        long stopBefore = effdate != null ? from - clockSkewSeconds : Long.MIN_VALUE;
+        long count = 0;
+        try (RevWalk walk = new BranchRevWalk(repository)) {
+            walk.sort(RevSort.COMMIT_TIME_DESC);
+            for (int i = 0; i < branches.size(); i++) {
+                BranchCommit tip = (BranchCommit) walk.parseCommit(branches.get(i).getObjectId());
+                tip.branches.set(i);
+                walk.markStart(tip);
+            }
+            RevCommit next;
+            while ((next = walk.next()) != null) {
+                BranchCommit commit = (BranchCommit) next;
+                if (commit.getCommitTime() < stopBefore) {
+                    break;
+                }
+                budget.chargeVisited();
+                commit.visited = true;
+                propagate(commit);
+                long authorTime = commit.getAuthorIdent().getWhen().getTime() / 1000;
+                if (commit.getParentCount() <= 1 && authorTime >= from && authorTime <= to) {
+                    visitor.visit(commit, branches.get(commit.branches.nextSetBit(0)).getName());
+                    count++;
+                }
+                commit.disposeBody();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 串流走訪的 commit 接收端；丟出例外（例如用戶端中斷連線）即結束走訪
+     */
+    @FunctionalInterface
+    public interface CommitVisitor {
+        /**
+         * @param branch 分支名稱（refs/remotes/origin/...）
+         */
+        void visit(RevCommit commit, String branch) throws IOException;
+    }
+
+    /**
+     * 把 commit 的分支 bit 傳給父 commit。
+     * 依 commit time 排序時子 commit 通常先出現；若時鐘誤差導致父 commit 已先走訪，則沿已走訪的祖先補傳。
+     */
+    private static void propagate(BranchCommit commit) {
+        Deque<BranchCommit> pending = new ArrayDeque<>();
+        pending.push(commit);
+        while (!pending.isEmpty()) {
+            BranchCommit child = pending.pop();
+            for (RevCommit p : child.getParents()) {
+                BranchCommit parent = (BranchCommit) p;
+                if (!parent.visited) {
+                    parent.branches.or(child.branches);
+                    continue;
+                }
+                BitSet missing = (BitSet) child.branches.clone();
+                missing.andNot(parent.branches);
+                if (!missing.isEmpty()) {
+                    parent.branches.or(missing);
+                    pending.push(parent);
+                }
+            }
+        }
+    }
+
+    /**
+     * 日期區間 + 排除 merge commit 的篩選條件
+     */
+    RevFilter dateRangeFilter(LocalDateTime effdate, LocalDateTime expdate) {
+        return AndRevFilter.create(new AuthorTimeRangeFilter(toEpochSecond(effdate), expdate != null ? toEpochSecond(expdate) : Long.MAX_VALUE,
+                clockSkewSeconds), RevFilter.NO_MERGES);
+    }
+
+    static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    /**
+     * 建立 BranchCommit 的 RevWalk
+     */
+    private static class BranchRevWalk extends RevWalk {
+        BranchRevWalk(Repository repository) {
+            super(repository);
+        }
+
+        @Override
+        protected RevCommit createCommit(AnyObjectId id) {
+            return new BranchCommit(id);
+        }
+    }
+
+    /**
+     * 平行走訪時單一 worker 每列的完整 commit id 與 commit time（表中只保留短 hash）
+     */
+    private static final class ChunkRows {
+        final List<String> commitIds = new ArrayList<>();
+        int[] commitTimes = new int[64];
+
+        void add(String commitId, int commitTime) {
+            if (commitIds.size() == commitTimes.length) {
+                commitTimes = Arrays.copyOf(commitTimes, commitTimes.length * 2);
+            }
+            commitTimes[commitIds.size()] = commitTime;
+            commitIds.add(commitId);
+        }
+    }
+
+    /**
+     * 附帶分支成員 bitset 的 commit，第 i 個 bit 代表第 i 個分支可到達此 commit
+     */
+    private static class BranchCommit extends RevCommit {
+        private static final long serialVersionUID = 1L;
+
+        final BitSet branches = new BitSet();
+        boolean visited;
+
+        BranchCommit(AnyObjectId id) {
+            super(id);
+        }
+    }
+
+    /**
+     * 以作者時間篩選區間（與報表顯示的日期一致）。
+     * 走訪依 commit time 排序，commit time 早於起始時間減去容許值後即丟出 StopWalkException 結束走訪。
+     */
+    static class AuthorTimeRangeFilter extends RevFilter {
+        private final long from;
+        private final long to;
+        private final long stopBefore;
+
+        AuthorTimeRangeFilter(long from, long to, long clockSkewSeconds) {
+            this.from = from;
+            this.to = to;
+            this.stopBefore = from - clockSkewSeconds;
+        }
+
+        @Override
+        public boolean include(RevWalk walker, RevCommit commit) {
+            if (commit.getCommitTime() < stopBefore) {
+                throw StopWalkException.INSTANCE;
+            }
+            long authorTime = commit.getAuthorIdent().getWhen().getTime() / 1000;
+            return authorTime >= from && authorTime <= to;
+        }
+
+        @Override
+        public boolean requiresCommitBody() {
+            return true;
+        }
+
+        @Override
+        public RevFilter clone() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.gitsync.service;
+
+import com.example.gitsync.model.GitCommit;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * GitLab REST API 用戶端。
+ * 1. 依 X-Total-Pages / X-Next-Page 取得所有分頁，已知總頁數時以固定視窗大小平行預取後續分頁。
+ * 2. 以 Jackson JsonParser 串流解析回應，直接轉成物件，不建立整棵 JSON tree。
+ * 3. 回應讀完後關閉串流，讓 HttpURLConnection 重用 keep-alive 連線。
+ * 4. 遇到 429 / 503 時依 Retry-After（或指數退避）重試；連線與讀取都有逾時，等不到回應時以指數退避重試。
+ * 5. 保留最近分頁的 ETag，以 If-None-Match 發出條件式請求，內容未變（304）時直接使用快取結果。
+ */
+@Component
+public class GitLabApiClient {
+
+    private static final int PER_PAGE = 100;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final ExecutorService pagePool;
+    private final int prefetchWindow;
+    private final int maxRetries;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final Map<String, Page<?>> etagCache;
+
+    public GitLabApiClient(@Value("${gitsync.gitlab.prefetch-window:4}") int prefetchWindow,
+                           @Value("${gitsync.gitlab.page-threads:8}") int pageThreads,
+                           @Value("${gitsync.gitlab.max-retries:5}") int maxRetries,
+                           @Value("${gitsync.gitlab.etag-cache-size:500}") int etagCacheSize,
+                           @Value("${gitsync.gitlab.connect-timeout-ms:10000}") int connectTimeoutMillis,
+                           @Value("${gitsync.gitlab.read-timeout-ms:60000}") int readTimeoutMillis) {
+        this.prefetchWindow = Math.max(1, prefetchWindow);
+        this.maxRetries = maxRetries;
+        // 0 在 HttpURLConnection 表示永不逾時，一律至少 1 毫秒
+        this.connectTimeoutMillis = Math.max(1, connectTimeoutMillis);
+        this.readTimeoutMillis = Math.max(1, readTimeoutMillis);
+        this.etagCache = Collections.synchronizedMap(new LinkedHashMap<String, Page<?>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Page<?>> eldest) {
+                return size() > etagCacheSize;
+            }
+        });
+        this.pagePool = Executors.newFixedThreadPool(Math.max(1, pageThreads), runnable -> {
+            Thread thread = new Thread(runnable, "gitlab-page");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pagePool.shutdownNow();
+    }
+
+    /**
+     * 查詢 commit（所有分頁）
+     * @param commitsUrl 例如 https://gitlab.com/api/v4/projects/{project_id}/repository/commits
+     * @param since 起始日期（yyyy-MM-dd'T'HH:mm:ss'Z'），可為 null
+     * @param until 結束日期（yyyy-MM-dd'T'HH:mm:ss'Z'），可為 null
+     * @param refName 分支名稱，null 表示預設分支
+     */
+    public List<GitCommit> listCommits(String commitsUrl, String privateToken, String since, String until, String refName) throws IOException {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("since", since);
+        query.put("until", until);
+        query.put("ref_name", refName);
+        return getAllPages(commitsUrl, query, privateToken, GitLabApiClient::readCommit);
+    }
+
+    /**
+     * 取得所有分頁並依頁序合併
+     */
+    public <T> List<T> getAllPages(String url, Map<String, String> query, String privateToken, ItemReader<T> reader) throws IOException {
+        Page<T> first = fetchPage(pageUrl(url, query, 1), privateToken, reader);
+        List<T> items = new ArrayList<>(first.items);
+        if (first.totalPages != null && first.totalPages > 1) {
+            // 已知總頁數：維持 prefetchWindow 個進行中的請求，依頁序收集結果
+            int totalPages = first.totalPages;
+            int nextPage = 2;
+            Deque<Future<Page<T>>> inflight = new ArrayDeque<>();
+            try {
+                while (nextPage <= totalPages && inflight.size() < prefetchWindow) {
+                    inflight.add(submitPage(pageUrl(url, query, nextPage++), privateToken, reader));
+                }
+                while (!inflight.isEmpty()) {
+                    items.addAll(await(inflight.poll()).items);
+                    if (nextPage <= totalPages) {
+                        inflight.add(submitPage(pageUrl(url, query, nextPage++), privateToken, reader));
+                    }
+                }
+            } finally {
+                inflight.forEach(f -> f.cancel(true));
+            }
+        } else {
+            // 總頁數未知（GitLab 超過一萬筆時不回傳 X-Total-Pages）：依 X-Next-Page 逐頁取得
+            Integer nextPage = first.nextPage;
+            while (nextPage != null) {
+                Page<T> page = fetchPage(pageUrl(url, query, nextPage), privateToken, reader);
+                items.addAll(page.items);
+                nextPage = page.nextPage;
+            }
+        }
+        return items;
+    }
+
+    private <T> Future<Page<T>> submitPage(String url, String privateToken, ItemReader<T> reader) {
+        return pagePool.submit(() -> fetchPage(url, privateToken, reader));
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("GitLab API 請求被中斷");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * 取得單一分頁；429 / 503 或等待回應逾時時退避後重試
+     */
+    @SuppressWarnings("unchecked")
+    <T> Page<T> fetchPage(String url, String privateToken, ItemReader<T> reader) throws IOException {
+        // 不同的 reader 會解析出不同型別，快取 key 需包含 reader
+        String cacheKey = reader.getClass().getName() + " " + url;
+        Page<T> cached = (Page<T>) etagCache.get(cacheKey);
+        for (int attempt = 0; ; attempt++) {
+            HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+            conn.setRequestMethod("GET");
+            // 沒有逾時的話，不再回應的 GitLab 會讓分頁執行緒與等待它的報表請求永久阻塞
+            conn.setConnectTimeout(connectTimeoutMillis);
+            conn.setReadTimeout(readTimeoutMillis);
+            conn.setRequestProperty("PRIVATE-TOKEN", privateToken);
+            conn.setRequestProperty("Accept", "application/json");
+            if (cached != null) {
+                conn.setRequestProperty("If-None-Match", cached.etag);
+            }
+            int respCode;
+            try {
+                respCode = conn.getResponseCode();
+            } catch (SocketTimeoutException e) {
+                conn.disconnect();
+                if (attempt < maxRetries) {
+                    sleep(retryAfterMillis(null, attempt));
+                    continue;
+                }
+                throw e;
+            }
+            if (respCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                drain(conn.getErrorStream());
+                return cached;
+            }
+            if ((respCode == 429 || respCode == 503) && attempt < maxRetries) {
+                long waitMillis = retryAfterMillis(conn.getHeaderField("Retry-After"), attempt);
+                drain(conn.getErrorStream());
+                sleep(waitMillis);
+                continue;
+            }
+            if (respCode != 200) {
+                drain(conn.getErrorStream());
+                throw new IOException("GitLab API 回應錯誤: " + respCode);
+            }
+            Page<T> page = new Page<>();
+            page.totalPages = intHeader(conn, "X-Total-Pages");
+            page.nextPage = intHeader(conn, "X-Next-Page");
+            page.etag = conn.getHeaderField("ETag");
+            try (InputStream in = conn.getInputStream()) {
+                page.items = Collections.unmodifiableList(readArray(in, reader));
+                drain(in);
+            }
+            if (page.etag != null) {
+                etagCache.put(cacheKey, page);
+            } else {
+                etagCache.remove(cacheKey);
+            }
+            return page;
+        }
+    }
+
+    private <T> List<T> readArray(InputStream in, ItemReader<T> reader) throws IOException {
+        List<T> items = new ArrayList<>();
+        // 不關閉底層串流，交由呼叫端讀完後關閉以保留 keep-alive 連線
+        JsonParser parser = jsonFactory.createParser(in);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        try {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("GitLab API 回應格式錯誤：預期為 JSON 陣列");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                items.add(reader.read(parser));
+            }
+        } finally {
+            parser.close();
+        }
+        return items;
+    }
+
+    /**
+     * 解析一個 commit 物件（parser 位於 START_OBJECT）
+     */
+    static GitCommit readCommit(JsonParser parser) throws IOException {
+        GitCommit commit = new GitCommit();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "id":
+                    commit.setCommitId(parser.getText());
+                    break;
+                case "author_name":
+                    commit.setAuthor(parser.getText());
+                    break;
+                case "message":
+                    commit.setMessage(parser.getText());
+                    break;
+                case "committed_date":
+                    commit.setCommitDate(LocalDateTime.parse(parser.getText().substring(0, 19)));
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return commit;
+    }
+
+    static String pageUrl(String url, Map<String, String> query, int page) throws UnsupportedEncodingException {
+        StringBuilder sb = new StringBuilder(url);
+        char sep = url.contains("?") ? '&' : '?';
+        for (Map.Entry<String, String> entry : query.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            sb.append(sep).append(entry.getKey()).append('=').append(URLEncoder.encode(entry.getValue(), "UTF-8"));
+            sep = '&';
+        }
+        sb.append(sep).append("per_page=").append(PER_PAGE).append("&page=").append(page);
+        return sb.toString();
+    }
+
+    private static long retryAfterMillis(String retryAfter, int attempt) {
+        if (retryAfter != null) {
+            try {
+                return Math.min(Long.parseLong(retryAfter.trim()) * 1000, MAX_BACKOFF_MILLIS);
+            } catch (NumberFormatException e) {
+                // 非秒數格式時改用指數退避
+            }
+        }
+        return Math.min(1000L << attempt, MAX_BACKOFF_MILLIS);
+    }
+
+    private static Integer intHeader(HttpURLConnection conn, String name) {
+        String value = conn.getHeaderField(name);
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 讀完剩餘內容，連線才能回到 keep-alive 連線池
+     */
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        byte[] buf = new byte[8192];
+        while (in.read(buf) != -1) {
+            // 丟棄
+        }
+        in.close();
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("GitLab API 重試等待被中斷");
+        }
+    }
+
+    /**
+     * 從 JsonParser 讀取一個物件（parser 位於 START_OBJECT）
+     */
+    @FunctionalInterface
+    public interface ItemReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+
+    static class Page<T> {
+        List<T> items;
+        Integer totalPages;
+        Integer nextPage;
+        String etag;
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.gitsync.service;
+
+import com.example.gitsync.model.GitCommit;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 不需 clone 的報表資料來源：透過 GitLab REST API 取得分支與區間內的 commit。
+ * 報表只需要 commit 的中繼資料，不必下載 tree / blob。
+ * 驗證使用 GitLab Personal Access Token（由報表表單的 password 欄位傳入）。
+ */
+@Component
+public class GitLabReportSource {
+
+    /** 解析報表所需欄位；以作者時間為準，與 clone 來源的報表一致 */
+    private static final GitLabApiClient.ItemReader<ApiCommit> COMMIT_READER = GitLabReportSource::readCommit;
+    private static final GitLabApiClient.ItemReader<String> BRANCH_NAME_READER = GitLabReportSource::readBranchName;
+    private static final GitLabApiClient.ItemReader<String[]> BRANCH_TIP_READER = GitLabReportSource::readBranchTip;
+
+    private final GitLabApiClient gitLabApiClient;
+    private final BranchSelector branchSelector;
+    private final ExecutorService branchPool;
+    private final long clockSkewMinutes;
+
+    public GitLabReportSource(GitLabApiClient gitLabApiClient, BranchSelector branchSelector,
+                              @Value("${gitsync.gitlab.branch-threads:4}") int branchThreads,
+                              @Value("${gitsync.walk.clock-skew-minutes:1440}") long clockSkewMinutes) {
+        this.gitLabApiClient = gitLabApiClient;
+        this.branchSelector = branchSelector;
+        this.clockSkewMinutes = clockSkewMinutes;
+        this.branchPool = Executors.newFixedThreadPool(Math.max(1, branchThreads), runnable -> {
+            Thread thread = new Thread(runnable, "gitlab-branch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        branchPool.shutdownNow();
+    }
+
+    /**
+     * 取得指定時間區間內各分支的 commit（排除 merge commit）
+     * @param repoUrl 倉庫 URL（http(s):// 或 ssh://），會轉為 /api/v4/projects/{path}
+     * @param privateToken GitLab Personal Access Token
+     * @return key 為 refs/remotes/origin/{branch}，與 clone 來源相同
+     */
+    public Map<String, List<GitCommit>> fetchCommitsByDateRange(String repoUrl, String privateToken, LocalDateTime effdate,
+                                                                LocalDateTime expdate, List<String> in_branches) throws Exception {
+        String projectUrl = projectApiUrl(repoUrl);
+        Map<String, String> branchQuery = new LinkedHashMap<>();
+        List<String> remoteBranches = gitLabApiClient.getAllPages(projectUrl + "/repository/branches", branchQuery, privateToken, BRANCH_NAME_READER);
+        List<String> branches = branchSelector.select(remoteBranches, in_branches);
+
+        // GitLab 的 since/until 以 commit 時間篩選；作者時間不晚於 commit 時間，結束時間則放寬時鐘誤差容許值
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("since", toIso(effdate));
+        query.put("until", toIso(expdate.plusMinutes(clockSkewMinutes)));
+        List<Future<List<ApiCommit>>> futures = new ArrayList<>();
+        for (String branch : branches) {
+            Map<String, String> branchCommitQuery = new LinkedHashMap<>(query);
+            branchCommitQuery.put("ref_name", branch);
+            futures.add(branchPool.submit(() ->
+                    gitLabApiClient.getAllPages(projectUrl + "/repository/commits", branchCommitQuery, privateToken, COMMIT_READER)));
+        }
+
+        Map<String, List<GitCommit>> branchCommits = new LinkedHashMap<>();
+        try {
+            for (int i = 0; i < branches.size(); i++) {
+                List<GitCommit> commitList = new ArrayList<>();
+                for (ApiCommit apiCommit : futures.get(i).get()) {
+                    LocalDateTime authoredDate = apiCommit.commit.getCommitDate();
+                    if (apiCommit.parentCount <= 1 && !authoredDate.isBefore(effdate) && !authoredDate.isAfter(expdate)) {
+                        commitList.add(apiCommit.commit);
+                    }
+                }
+                if (!commitList.isEmpty()) {
+                    branchCommits.put(GitMirrorStore.REMOTE_BRANCH_PREFIX + branches.get(i), commitList);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("GitLab API 請求被中斷");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+        return branchCommits;
+    }
+
+    /**
+     * 取得選定分支目前的頂端 commit id（只查分支清單，不查 commit）
+     * @return key 為分支名稱，依名稱排序
+     */
+    public SortedMap<String, String> branchTips(String repoUrl, String privateToken, List<String> in_branches) throws Exception {
+        String projectUrl = projectApiUrl(repoUrl);
+        Map<String, String> remoteTips = new LinkedHashMap<>();
+        for (String[] tip : gitLabApiClient.getAllPages(projectUrl + "/repository/branches", new LinkedHashMap<>(), privateToken, BRANCH_TIP_READER)) {
+            remoteTips.put(tip[0], tip[1]);
+        }
+        SortedMap<String, String> tips = new TreeMap<>();
+        for (String branch : branchSelector.select(remoteTips.keySet(), in_branches)) {
+            tips.put(branch, remoteTips.get(branch));
+        }
+        return tips;
+    }
+
+    /**
+     * 由倉庫 URL 推得 GitLab 專案 API 位址，例如
+     * https://gitlab.example.com/group/project.git → https://gitlab.example.com/api/v4/projects/group%2Fproject
+     */
+    static String projectApiUrl(String repoUrl) throws UnsupportedEncodingException {
+        if (repoUrl.contains("/api/v4/projects/")) {
+            return repoUrl.endsWith("/") ? repoUrl.substring(0, repoUrl.length() - 1) : repoUrl;
+        }
+        URI uri = URI.create(repoUrl.trim());
+        String path = uri.getPath();
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        if (path.endsWith(".git")) {
+            path = path.substring(0, path.length() - 4);
+        }
+        // ssh:// 的 port 是 SSH 服務，API 一律走 https 預設 port
+        boolean http = "http".equals(uri.getScheme()) || "https".equals(uri.getScheme());
+        String base = http ? uri.getScheme() + "://" + uri.getHost() + (uri.getPort() > 0 ? ":" + uri.getPort() : "")
+                : "https://" + uri.getHost();
+        return base + "/api/v4/projects/" + URLEncoder.encode(path, "UTF-8");
+    }
+
+    private static String toIso(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toOffsetDateTime().toString();
+    }
+
+    private static ApiCommit readCommit(JsonParser parser) throws IOException {
+        ApiCommit apiCommit = new ApiCommit();
+        GitCommit commit = apiCommit.commit;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "id":
+                    commit.setCommitId(parser.getText());
+                    break;
+                case "author_name":
+                    commit.setAuthor(parser.getText());
+                    break;
+                case "message":
+                    commit.setMessage(parser.getText());
+                    break;
+                case "authored_date":
+                    commit.setCommitDate(OffsetDateTime.parse(parser.getText())
+                            .atZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime());
+                    break;
+                case "parent_ids":
+                    if (token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            apiCommit.parentCount++;
+                        }
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return apiCommit;
+    }
+
+    private static String readBranchName(JsonParser parser) throws IOException {
+        String name = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("name".equals(field)) {
+                name = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return name;
+    }
+
+    /**
+     * @return {分支名稱, 頂端 commit id}
+     */
+    private static String[] readBranchTip(JsonParser parser) throws IOException {
+        String[] tip = new String[2];
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("name".equals(field)) {
+                tip[0] = parser.getText();
+            } else if ("commit".equals(field) && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String commitField = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("id".equals(commitField)) {
+                        tip[1] = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return tip;
+    }
+
+    private static class ApiCommit {
+        final GitCommit commit = new GitCommit();
+        int parentCount;
+    }
+}
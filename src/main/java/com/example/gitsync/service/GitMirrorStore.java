@@ -0,0 +1,414 @@
+package com.example.gitsync.service;
+
+import com.example.gitsync.factory.CustomSshSessionFactory;
+import org.eclipse.jgit.api.FetchCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.LsRemoteCommand;
+import org.eclipse.jgit.api.TransportCommand;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.SshTransport;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.util.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 持久化的 bare mirror 倉庫快取。
+ * 1. 以 repo URL 為 key，每個 repo 只 clone 一次，之後每次請求只做 git fetch 取得差異。
+ * 2. 每個 repo 一把鎖，避免同時 fetch 造成倉庫損毀。
+ * 3. 超過磁碟預算時，以 LRU 淘汰最久未使用的 mirror；各 mirror 的大小於 fetch 後重新計算並快取，
+ *    淘汰檢查不必掃描所有 mirror 的檔案。
+ * 4. fetch 完成後只需唯讀走訪時可改為讀取（{@link MirrorLease#downgradeToRead()}），釋放鎖讓其他請求 fetch，
+ *    讀取中的 mirror 不會被淘汰；fetch 只新增物件，已解析的 commit 在讀取期間都仍存在。
+ */
+@Component
+public class GitMirrorStore {
+
+    private static final Logger log = LoggerFactory.getLogger(GitMirrorStore.class);
+
+    /** 遠端分支在 mirror 中的存放位置，與一般 clone 的 refs/remotes/origin/* 一致 */
+    public static final String REMOTE_BRANCH_PREFIX = Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/";
+
+    private final File baseDir;
+    private final long maxBytes;
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastAccess = new ConcurrentHashMap<>();
+    /** mirror 目錄大小（bytes），fetch 後更新；服務啟動前已存在的 mirror 於第一次淘汰檢查時計算 */
+    private final Map<String, Long> mirrorSizes = new ConcurrentHashMap<>();
+    /** 已釋放鎖、仍在唯讀走訪的 lease 數 */
+    private final Map<String, AtomicInteger> readers = new ConcurrentHashMap<>();
+    /** 所有 ssh:// 指令共用，重複使用已驗證的 SSH session */
+    private final CustomSshSessionFactory sshSessionFactory;
+
+    public GitMirrorStore(@Value("${gitsync.mirror.base-dir}") String baseDir,
+                          @Value("${gitsync.mirror.max-size-mb:10240}") long maxSizeMb,
+                          @Value("${gitsync.ssh.max-sessions-per-host:4}") int maxSessionsPerHost,
+                          @Value("${gitsync.ssh.idle-timeout-seconds:300}") long idleTimeoutSeconds,
+                          @Value("${gitsync.ssh.acquire-timeout-seconds:60}") long acquireTimeoutSeconds) {
+        this.baseDir = new File(baseDir);
+        this.maxBytes = maxSizeMb * 1024L * 1024L;
+        this.baseDir.mkdirs();
+        this.sshSessionFactory = new CustomSshSessionFactory(maxSessionsPerHost, idleTimeoutSeconds, acquireTimeoutSeconds);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sshSessionFactory.shutdown();
+    }
+
+    /**
+     * 取得（必要時建立）repo 的 mirror，並 fetch 所有分支。
+     * 回傳的 MirrorLease 持有該 repo 的鎖，使用完畢務必 close。
+     */
+    public MirrorLease open(String repoUrl, String username, String password) throws Exception {
+        return open(repoUrl, username, password, null);
+    }
+
+    /**
+     * 取得（必要時建立）repo 的 mirror，只 fetch 指定的分支。
+     * @param branches 分支名稱（不含 refs/heads/ 前綴），null 表示所有分支，空清單表示不 fetch
+     */
+    public MirrorLease open(String repoUrl, String username, String password, Collection<String> branches) throws Exception {
+        return open(repoUrl, username, password, branches, NullProgressMonitor.INSTANCE);
+    }
+
+    /**
+     * 同上，並透過 monitor 回報 fetch 進度；monitor.isCancelled() 為 true 時中止 fetch
+     */
+    public MirrorLease open(String repoUrl, String username, String password, Collection<String> branches,
+                            ProgressMonitor monitor) throws Exception {
+        return open(repoUrl, username, password, branches, null, monitor);
+    }
+
+    /**
+     * 依 ls-remote 取得的分支頂端開啟 mirror：只 fetch 本地 ref 與遠端頂端不同的分支，
+     * 全部相同時完全不連線、不傳輸物件
+     * @param advertisedTips 分支名稱（不含 refs/heads/ 前綴）→ 遠端頂端
+     */
+    public MirrorLease openAtTips(String repoUrl, String username, String password, Map<String, ObjectId> advertisedTips,
+                                  ProgressMonitor monitor) throws Exception {
+        return open(repoUrl, username, password, null, advertisedTips, monitor);
+    }
+
+    private MirrorLease open(String repoUrl, String username, String password, Collection<String> branches,
+                             Map<String, ObjectId> advertisedTips, ProgressMonitor monitor) throws Exception {
+        String key = mirrorKey(repoUrl);
+        ReentrantLock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            File dir = new File(baseDir, key);
+            Git git = openOrInit(dir, repoUrl);
+            try {
+                if (advertisedTips != null) {
+                    branches = staleBranches(git.getRepository(), advertisedTips);
+                }
+                if (branches == null || !branches.isEmpty()) {
+                    fetch(git, repoUrl, username, password, branches, monitor);
+                    // 只重新計算剛 fetch 的 mirror
+                    mirrorSizes.put(key, sizeOf(dir.toPath()));
+                }
+            } catch (Exception e) {
+                git.close();
+                if (!hasBranches(dir)) {
+                    // 第一次 fetch 就失敗的 mirror 直接移除，下次重新建立
+                    FileUtils.delete(dir, FileUtils.RECURSIVE | FileUtils.RETRY | FileUtils.SKIP_MISSING);
+                    mirrorSizes.remove(key);
+                } else {
+                    // fetch 中途失敗仍可能已寫入部分物件
+                    mirrorSizes.put(key, sizeOf(dir.toPath()));
+                }
+                throw e;
+            }
+            lastAccess.put(key, System.currentTimeMillis());
+            return new MirrorLease(key, git, lock);
+        } catch (Exception e) {
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    /**
+     * 向遠端查詢分支清單（ls-remote），只交換 ref 資訊，不傳輸任何物件
+     * @return key 為分支名稱（不含 refs/heads/ 前綴），依名稱排序
+     */
+    public Map<String, ObjectId> lsRemote(String repoUrl, String username, String password) throws Exception {
+        LsRemoteCommand command = Git.lsRemoteRepository()
+                .setRemote(repoUrl)
+                .setHeads(true);
+        configureTransport(command, repoUrl, username, password);
+        Map<String, ObjectId> heads = new TreeMap<>();
+        for (Ref ref : command.call()) {
+            if (ref.getName().startsWith(Constants.R_HEADS)) {
+                heads.put(ref.getName().substring(Constants.R_HEADS.length()), ref.getObjectId());
+            }
+        }
+        return heads;
+    }
+
+    /**
+     * 依 URL 類型設定 SSH / HTTP 驗證；SSH 使用共用的 session 池
+     */
+    public void configureTransport(TransportCommand<?, ?> command, String repoUrl, String username, String password) {
+        if (repoUrl.startsWith("ssh://")) {
+            command.setTransportConfigCallback(transport -> {
+                if (transport instanceof SshTransport) {
+                    ((SshTransport) transport).setSshSessionFactory(sshSessionFactory);
+                }
+            });
+        }
+        if (username != null && password != null) {
+            command.setCredentialsProvider(new UsernamePasswordCredentialsProvider(username, password));
+        }
+    }
+
+    /**
+     * 本地 ref 不存在或與遠端頂端不同的分支
+     */
+    private static List<String> staleBranches(Repository repository, Map<String, ObjectId> advertisedTips) throws IOException {
+        List<String> stale = new ArrayList<>();
+        for (Map.Entry<String, ObjectId> tip : advertisedTips.entrySet()) {
+            Ref local = repository.exactRef(REMOTE_BRANCH_PREFIX + tip.getKey());
+            if (local == null || !tip.getValue().equals(local.getObjectId())) {
+                stale.add(tip.getKey());
+            }
+        }
+        return stale;
+    }
+
+    private Git openOrInit(File dir, String repoUrl) throws Exception {
+        if (dir.exists()) {
+            try {
+                return Git.open(dir);
+            } catch (IOException e) {
+                // 目錄損毀，重新建立
+                FileUtils.delete(dir, FileUtils.RECURSIVE | FileUtils.RETRY);
+            }
+        }
+        Git git = Git.init().setBare(true).setDirectory(dir).call();
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString("remote", Constants.DEFAULT_REMOTE_NAME, "url", repoUrl);
+        config.setString("remote", Constants.DEFAULT_REMOTE_NAME, "fetch", "+" + Constants.R_HEADS + "*:" + REMOTE_BRANCH_PREFIX + "*");
+        config.save();
+        return git;
+    }
+
+    private void fetch(Git git, String repoUrl, String username, String password, Collection<String> branches,
+                       ProgressMonitor monitor) throws Exception {
+        List<RefSpec> refSpecs = new ArrayList<>();
+        if (branches == null) {
+            refSpecs.add(new RefSpec("+" + Constants.R_HEADS + "*:" + REMOTE_BRANCH_PREFIX + "*"));
+        } else {
+            // 只傳輸指定分支需要的物件
+            for (String branch : branches) {
+                refSpecs.add(new RefSpec("+" + Constants.R_HEADS + branch + ":" + REMOTE_BRANCH_PREFIX + branch));
+            }
+        }
+        FetchCommand fetchCommand = git.fetch()
+                .setRemote(Constants.DEFAULT_REMOTE_NAME)
+                .setRefSpecs(refSpecs)
+                .setRemoveDeletedRefs(true)
+                .setProgressMonitor(monitor);
+        configureTransport(fetchCommand, repoUrl, username, password);
+        FetchResult result = fetchCommand.call();
+        linkHead(git.getRepository(), result.getAdvertisedRef(Constants.HEAD));
+    }
+
+    /**
+     * bare mirror 的 HEAD 指向遠端預設分支，讓 git.log() 與一般 clone 行為一致
+     */
+    private void linkHead(Repository repository, Ref remoteHead) throws IOException {
+        List<Ref> branches = repository.getRefDatabase().getRefsByPrefix(REMOTE_BRANCH_PREFIX);
+        if (branches.isEmpty()) {
+            return;
+        }
+        Ref target = null;
+        ObjectId headId = remoteHead != null ? remoteHead.getObjectId() : null;
+        for (Ref ref : branches) {
+            if (headId != null && headId.equals(ref.getObjectId())) {
+                String name = ref.getName().substring(REMOTE_BRANCH_PREFIX.length());
+                // 多個分支指向同一個 commit 時，優先採用 master / main
+                if (target == null || "master".equals(name) || "main".equals(name)) {
+                    target = ref;
+                }
+            }
+        }
+        if (target == null) {
+            target = branches.get(0);
+        }
+        RefUpdate update = repository.updateRef(Constants.HEAD);
+        update.disableRefLog();
+        update.link(target.getName());
+    }
+
+    private boolean hasBranches(File dir) {
+        File refs = new File(dir, "packed-refs");
+        File remotes = new File(dir, REMOTE_BRANCH_PREFIX);
+        return refs.exists() || (remotes.isDirectory() && remotes.list().length > 0);
+    }
+
+    /**
+     * 超過磁碟預算時，由最久未使用的 mirror 開始刪除（正在使用中的 mirror 不會被刪）。
+     * 使用快取的 mirror 大小，只列出目錄、不掃描檔案。
+     */
+    private void evictIfNeeded() {
+        File[] dirs = baseDir.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return;
+        }
+        List<File> candidates = new ArrayList<>();
+        long total = 0;
+        Map<File, Long> sizes = new HashMap<>();
+        for (File dir : dirs) {
+            long size = mirrorSizes.computeIfAbsent(dir.getName(), k -> sizeOf(dir.toPath()));
+            sizes.put(dir, size);
+            total += size;
+            candidates.add(dir);
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        candidates.sort(Comparator.comparingLong(dir -> lastAccess.getOrDefault(dir.getName(), dir.lastModified())));
+        for (File dir : candidates) {
+            if (total <= maxBytes) {
+                break;
+            }
+            ReentrantLock lock = locks.computeIfAbsent(dir.getName(), k -> new ReentrantLock());
+            if (!lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (isBeingRead(dir.getName())) {
+                    continue;
+                }
+                FileUtils.delete(dir, FileUtils.RECURSIVE | FileUtils.RETRY | FileUtils.SKIP_MISSING);
+                lastAccess.remove(dir.getName());
+                mirrorSizes.remove(dir.getName());
+                total -= sizes.get(dir);
+                log.info("Evicted git mirror {}", dir.getName());
+            } catch (IOException e) {
+                log.warn("Failed to evict git mirror {}", dir.getName(), e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean isBeingRead(String key) {
+        AtomicInteger count = readers.get(key);
+        return count != null && count.get() > 0;
+    }
+
+    private static long sizeOf(Path dir) {
+        AtomicLong size = new AtomicLong();
+        try {
+            // 其他 mirror 可能同時在 fetch / gc，暫存檔消失時略過即可
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    size.addAndGet(attrs.size());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // 以目前累計的大小為準
+        }
+        return size.get();
+    }
+
+    private static String mirrorKey(String repoUrl) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        byte[] hash = digest.digest(repoUrl.trim().getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hash) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 已 fetch 完成的 mirror，close 時釋放鎖並視需要淘汰冷門 mirror
+     */
+    public class MirrorLease implements AutoCloseable {
+        private final String key;
+        private final Git git;
+        private final ReentrantLock lock;
+        private boolean readOnly;
+
+        private MirrorLease(String key, Git git, ReentrantLock lock) {
+            this.key = key;
+            this.git = git;
+            this.lock = lock;
+        }
+
+        public Git getGit() {
+            return git;
+        }
+
+        public Repository getRepository() {
+            return git.getRepository();
+        }
+
+        /**
+         * 改為唯讀：立即釋放鎖，讓同一倉庫的其他請求可以 fetch，mirror 在 close 前不會被淘汰。
+         * 之後只能讀取呼叫前已解析的 commit（例如走訪先前取得的分支頂端），不可再更新 ref。
+         */
+        public void downgradeToRead() {
+            if (readOnly) {
+                return;
+            }
+            readers.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+            readOnly = true;
+            lock.unlock();
+        }
+
+        @Override
+        public void close() {
+            git.close();
+            lastAccess.put(key, System.currentTimeMillis());
+            if (readOnly) {
+                readers.get(key).decrementAndGet();
+            } else {
+                lock.unlock();
+            }
+            evictIfNeeded();
+        }
+    }
+}
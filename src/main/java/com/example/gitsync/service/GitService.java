@@ -1,32 +1,27 @@
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.io.InputStreamReader;
-import java.io.BufferedReader;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 package com.example.gitsync.service;
 
-import org.eclipse.jgit.api.CloneCommand;
-import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.transport.SshSessionFactory;
-import org.eclipse.jgit.transport.SshTransport;
-import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.springframework.stereotype.Service;
-import com.example.gitsync.factory.CustomSshSessionFactory; // <-- 匯入我們自訂的 Factory
 import com.example.gitsync.model.GitCommit;
+import com.example.gitsync.model.SyncWatermark;
 import com.example.gitsync.model.WorkLog;
-import com.example.gitsync.repository.WorkLogRepository;
+import com.example.gitsync.repository.SyncWatermarkRepository;
+import com.example.gitsync.repository.WorkLogBulkWriter;
 
-import java.io.File;
-import java.nio.file.Files;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 @Service
 public class GitService {
@@ -39,127 +34,45 @@ public class GitService {
      * @return GitCommit 清單
      */
     public List<GitCommit> fetchCommitsViaGitLabApi(String apiUrl, String privateToken, String since, String until) throws Exception {
-        List<GitCommit> commits = new ArrayList<>();
-        String urlStr = apiUrl + "?since=" + since + "&until=" + until + "&per_page=100";
-        URL url = new URL(urlStr);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        conn.setRequestProperty("PRIVATE-TOKEN", privateToken);
-        conn.setRequestProperty("Accept", "application/json");
-        int respCode = conn.getResponseCode();
-        if (respCode != 200) {
-            throw new RuntimeException("GitLab API 回應錯誤: " + respCode);
-        }
-        BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), "UTF-8"));
-        StringBuilder sb = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            sb.append(line);
-        }
-        reader.close();
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode arr = mapper.readTree(sb.toString());
-        for (JsonNode node : arr) {
-            GitCommit commit = new GitCommit();
-            commit.setCommitId(node.get("id").asText());
-            commit.setAuthor(node.get("author_name").asText());
-            commit.setMessage(node.get("message").asText());
-            commit.setCommitDate(LocalDateTime.parse(node.get("committed_date").asText().substring(0,19)));
-            commits.add(commit);
-        }
-        return commits;
+        // 依分頁標頭取得所有 commit，不再只取第一頁的 100 筆
+        return gitLabApiClient.listCommits(apiUrl, privateToken, since, until, null);
     }
     /**
      * 將 WorkLog 寫入資料庫（支援 branchName 欄位）
      */
-    public void syncWorkLogsToDatabase(List<com.example.gitsync.model.WorkLog> workLogs) {
-        if (workLogs != null && !workLogs.isEmpty()) {
-            workLogRepository.saveAll(workLogs);
+    public WorkLogBulkWriter.UpsertResult syncWorkLogsToDatabase(List<com.example.gitsync.model.WorkLog> workLogs) {
+        if (workLogs == null || workLogs.isEmpty()) {
+            return new WorkLogBulkWriter.UpsertResult();
         }
+        return workLogBulkWriter.upsert(workLogs);
     }
-    private final WorkLogRepository workLogRepository;
+    private final WorkLogBulkWriter workLogBulkWriter;
     private final WorkHourCalculator workHourCalculator;
+    private final GitMirrorStore gitMirrorStore;
+    private final SyncWatermarkRepository syncWatermarkRepository;
+    private final CommitWalker commitWalker;
+    private final GitLabApiClient gitLabApiClient;
+    private final BranchSelector branchSelector;
 
-    public GitService(WorkLogRepository workLogRepository, WorkHourCalculator workHourCalculator) {
-        this.workLogRepository = workLogRepository;
+    public GitService(WorkLogBulkWriter workLogBulkWriter, WorkHourCalculator workHourCalculator, GitMirrorStore gitMirrorStore,
+                      SyncWatermarkRepository syncWatermarkRepository, CommitWalker commitWalker,
+                      GitLabApiClient gitLabApiClient, BranchSelector branchSelector) {
+        this.workLogBulkWriter = workLogBulkWriter;
         this.workHourCalculator = workHourCalculator;
-    }
-
-    public List<GitCommit> fetchCommits(String repoUrl, String username, String password) throws Exception {
-        if (repoUrl.startsWith("ssh://")) {
-            // <-- 變更：將帳號密碼傳遞給 SSH 方法
-            return fetchCommitsViaSsh(repoUrl, username, password);
-        } else {
-            return fetchCommitsViaHttp(repoUrl, username, password);
-        }
-    }
-
-private List<GitCommit> fetchCommitsViaHttp(String repoUrl, String username, String password) throws Exception {
-        List<GitCommit> commits = new ArrayList<>();
-        File localPath = File.createTempFile("TempGitRepo", "");
-        localPath.delete();
-
-        Git git = null;
-        try {
-            git = Git.cloneRepository()
-                    .setURI(repoUrl)
-                    .setCredentialsProvider(new UsernamePasswordCredentialsProvider(username, password))
-                    .setDirectory(localPath)
-                    .call();
-
-            Iterable<RevCommit> log = git.log().call();
-            for (RevCommit commit : log) {
-                GitCommit gitCommit = new GitCommit();
-                gitCommit.setCommitId(commit.getName());
-                gitCommit.setAuthor(commit.getAuthorIdent().getName());
-                gitCommit.setMessage(commit.getFullMessage());
-                gitCommit.setCommitDate(commit.getAuthorIdent().getWhen().toInstant()
-                        .atZone(java.time.ZoneId.systemDefault())
-                        .toLocalDateTime());
-                commits.add(gitCommit);
-            }
-        } finally {
-            if (git != null) {
-                git.close();
-            }
-        }
-        return commits;
+        this.gitMirrorStore = gitMirrorStore;
+        this.syncWatermarkRepository = syncWatermarkRepository;
+        this.commitWalker = commitWalker;
+        this.gitLabApiClient = gitLabApiClient;
+        this.branchSelector = branchSelector;
     }
 
     /**
-     * 更新後的 SSH 連線方法，使用帳號密碼
+     * 取得預設分支的 commit（SSH / HTTP 皆透過 mirror 快取，驗證方式由 GitMirrorStore 依 URL 決定）
      */
-    private List<GitCommit> fetchCommitsViaSsh(String repoUrl, String username, String password) throws Exception {
-        System.out.println("Fetching commits via SSH...");
-        System.out.println(username);
-        System.out.println(password);
+    public List<GitCommit> fetchCommits(String repoUrl, String username, String password) throws Exception {
         List<GitCommit> commits = new ArrayList<>();
-        // 建立暫存目錄來存放 clone 下來的專案
-        File localPath = Files.createTempDirectory("TempGitRepo").toFile();
-
-        // <-- 1. 建立我們自訂的 SSH Session Factory
-        CustomSshSessionFactory sshSessionFactory = new CustomSshSessionFactory();
-
-        // <-- 2. 設定 JGit 全域使用這個 Factory 實例
-        // 這是一個靜態方法，會影響當前 JVM 中所有的 JGit SSH 操作
-        SshSessionFactory.setInstance(sshSessionFactory);
-
-        // <-- 3. 建立帳號密碼的 CredentialsProvider
-        UsernamePasswordCredentialsProvider credentialsProvider = new UsernamePasswordCredentialsProvider(username, password);
-
-        Git git = null;
-        try {
-            git = Git.cloneRepository()
-                    .setURI(repoUrl)
-                    .setDirectory(localPath)
-                    
-                    // <-- 4. 將 CredentialsProvider 設定給 clone 指令
-                    // JGit 的 SSH 實作會自動使用它來進行密碼驗證
-                    .setCredentialsProvider(credentialsProvider)
-                    // <-- 5. 不再需要 setTransportConfigCallback，因為我們用了全域設定
-                    .call();
-
-            Iterable<RevCommit> log = git.log().call();
+        try (GitMirrorStore.MirrorLease lease = gitMirrorStore.open(repoUrl, username, password)) {
+            Iterable<RevCommit> log = lease.getGit().log().call();
             for (RevCommit commit : log) {
                 GitCommit gitCommit = new GitCommit();
                 gitCommit.setCommitId(commit.getName());
@@ -170,16 +83,6 @@ private List<GitCommit> fetchCommitsViaHttp(String repoUrl, String username, Str
                         .toLocalDateTime());
                 commits.add(gitCommit);
             }
-        } finally {
-            if (git != null) {
-                git.close();
-            }
-            // 刪除暫存目錄
-            // (可加入更完善的遞迴刪除邏輯)
-            if (localPath.exists()) {
-                //簡易刪除
-                localPath.delete();
-            }
         }
         return commits;
     }
@@ -192,49 +95,19 @@ private List<GitCommit> fetchCommitsViaHttp(String repoUrl, String username, Str
      * @return RevCommit 列表
      */
     public List<RevCommit> fetchAllCommits(String repoUrl, String username, String password, String branch) throws Exception {
-        File localPath = Files.createTempDirectory("TempGitRepo").toFile();
-        List<RevCommit> commitList = new ArrayList<>();
-
-        // 建立 clone 指令
-        CloneCommand cloneCommand = Git.cloneRepository()
-                .setURI(repoUrl)
-                .setBranch(branch)
-                .setDirectory(localPath);
-
-        // 根據 URL 類型設定驗證
-        if (repoUrl.startsWith("ssh://")) {
-            // --- SSH 驗證邏輯 (新方法) ---
-
-            // 1. 建立我們的自訂 SSH Factory 實例
-            CustomSshSessionFactory sshSessionFactory = new CustomSshSessionFactory();
-            
-            // 2. 使用 TransportConfigCallback 將 Factory 應用到這次操作上
-            cloneCommand.setTransportConfigCallback(transport -> {
-                if (transport instanceof SshTransport) {
-                    SshTransport sshTransport = (SshTransport) transport;
-                    sshTransport.setSshSessionFactory(sshSessionFactory);
-                }
-            });
+        return fetchAllCommits(repoUrl, username, password, branch, WalkBudget.unlimited());
+    }
 
-            // 3. 如果提供了帳號密碼，設定 CredentialsProvider
-            if (username != null && password != null) {
-                cloneCommand.setCredentialsProvider(new UsernamePasswordCredentialsProvider(username, password));
-            }
-        } else {
-            // --- HTTP/S 驗證邏輯 ---
-            if (username != null && password != null) {
-                cloneCommand.setCredentialsProvider(new UsernamePasswordCredentialsProvider(username, password));
-            }
-        }
-        
-        // 執行 clone 並處理 commit
-        try (Git git = cloneCommand.call()) {
-            Iterable<RevCommit> logs = git.log().all().call();
-            logs.forEach(commitList::add);
-        } finally {
-            if (localPath.exists()) {
-                // 簡易刪除
-                localPath.delete();
+    /**
+     * 同上，保留的 commit 超過 budget 時中止走訪（報告請求使用）
+     */
+    public List<RevCommit> fetchAllCommits(String repoUrl, String username, String password, String branch, WalkBudget budget) throws Exception {
+        List<RevCommit> commitList = new ArrayList<>();
+        // mirror 已包含所有分支，branch 僅影響原本 clone 的 checkout，這裡不需處理
+        try (GitMirrorStore.MirrorLease lease = gitMirrorStore.open(repoUrl, username, password)) {
+            for (RevCommit commit : lease.getGit().log().all().call()) {
+                budget.charge(commit);
+                commitList.add(commit);
             }
         }
         return commitList;
@@ -243,7 +116,7 @@ private List<GitCommit> fetchCommitsViaHttp(String repoUrl, String username, Str
      * 同步 Git Log 到資料庫
      * @param commits 從 Git 獲取的 commit 列表
      */
-    public void syncCommitsToDatabase(List<RevCommit> commits) {
+    public WorkLogBulkWriter.UpsertResult syncCommitsToDatabase(List<RevCommit> commits) {
         List<WorkLog> workLogs = new ArrayList<>();
         for (RevCommit commit : commits) {
             WorkLog workLog = new WorkLog();
@@ -263,83 +136,216 @@ private List<GitCommit> fetchCommitsViaHttp(String repoUrl, String username, Str
             workLogs.add(workLog);
         }
         
-        if (!workLogs.isEmpty()) {
-            workLogRepository.saveAll(workLogs);
-        }
+        return syncWorkLogsToDatabase(workLogs);
     }
     /**
-     * 取得指定時間區間的所有 commit（支援帳號密碼，不指定分支，預設 master）
+     * 取得指定時間區間內各分支的 commit，以欄式的 CommitTable 回傳。
+     * 走訪時每個 commit 即寫入表中並釋放內容，不先收集 RevCommit，報表只佔用精簡的欄位資料。
      * @param repoUrl 倉庫 URL
      * @param username 使用者名稱 (可為 null)
      * @param password 密碼 (可為 null)
      * @param effdate 起始時間（LocalDateTime）
      * @param expdate 結束時間（LocalDateTime）
-     * @return 時間區間內的 RevCommit 列表
+     * @param budget 單次請求的走訪上限，同一請求的多個倉庫共用
+     * @throws WalkBudgetExceededException 保留的 commit 超過單次請求上限（gitsync.admission.*-per-request）
+     */
+    public CommitTable fetchCommitTableByDateRange(String repoUrl, String username, String password, LocalDateTime effdate, LocalDateTime expdate, List<String> in_branches,
+                                                   WalkBudget budget) throws Exception {
+        // 先以 ls-remote 決定分支，再只 fetch mirror 尚未包含最新頂端的分支
+        SortedMap<String, ObjectId> tips = remoteBranchTips(repoUrl, username, password, in_branches);
+        try (GitMirrorStore.MirrorLease lease = gitMirrorStore.openAtTips(repoUrl, username, password, tips, NullProgressMonitor.INSTANCE)) {
+            Repository repository = lease.getRepository();
+            // 所有分支共用一次走訪，共同祖先只解析一次
+            return commitWalker.walkBranches(repository, branchRefs(repository, new ArrayList<>(tips.keySet())), effdate, expdate, budget);
+        }
+    }
+
+    /**
+     * 依 commit time 由新到舊逐筆把 commit 交給 visitor，不先收集成清單（見 CommitWalker.streamBranches）。
+     * fetch 並解析分支頂端後即釋放 mirror 的鎖，visitor 阻塞（慢速用戶端）時不影響同一倉庫的其他 fetch。
+     * @param effdate 起始時間，null 表示完整歷史
+     * @param expdate 結束時間，null 表示不限制
+     * @param in_branches 指定的分支，null 或空清單表示全部（排除 gitsync.branch.excludes）
+     * @param budget 已走訪 commit 的數量上限
+     * @return 交給 visitor 的 commit 數
+     * @throws WalkBudgetExceededException 走訪的 commit 超過單次請求上限
+     */
+    public long streamCommits(String repoUrl, String username, String password, LocalDateTime effdate, LocalDateTime expdate,
+                              List<String> in_branches, WalkBudget budget, CommitWalker.CommitVisitor visitor) throws Exception {
+        SortedMap<String, ObjectId> tips = remoteBranchTips(repoUrl, username, password, in_branches);
+        try (GitMirrorStore.MirrorLease lease = gitMirrorStore.openAtTips(repoUrl, username, password, tips, NullProgressMonitor.INSTANCE)) {
+            Repository repository = lease.getRepository();
+            // ref 在釋放鎖後可能被其他 fetch 更新，先取得頂端；走訪只讀取既有物件，不需要鎖
+            List<Ref> refs = branchRefs(repository, new ArrayList<>(tips.keySet()));
+            lease.downgradeToRead();
+            return commitWalker.streamBranches(repository, refs, effdate, expdate, budget, visitor);
+        }
+    }
+
+    /**
+     * 以 ls-remote 取得選定分支目前的頂端 commit，不需 fetch
+     * @return key 為分支名稱（不含 refs/heads/），依名稱排序
      */
-    public Map<String, List<RevCommit>> fetchCommitsByDateRange(String repoUrl, String username, String password, LocalDateTime effdate, LocalDateTime expdate, List<String> in_branches) throws Exception {
-        File localPath = Files.createTempDirectory("TempGitRepo").toFile();
-        Map<String, List<RevCommit>> branchCommits = new HashMap<>();
-        Git git = null;
-        try {
-            CloneCommand cloneCommand = Git.cloneRepository()
-                    .setURI(repoUrl)
-                    .setDirectory(localPath);
-            if (username != null && password != null) {
-                cloneCommand.setCredentialsProvider(new UsernamePasswordCredentialsProvider(username, password));
+    public SortedMap<String, ObjectId> remoteBranchTips(String repoUrl, String username, String password, List<String> in_branches) throws Exception {
+        Map<String, ObjectId> heads = gitMirrorStore.lsRemote(repoUrl, username, password);
+        SortedMap<String, ObjectId> tips = new TreeMap<>();
+        for (String branch : branchSelector.select(heads.keySet(), in_branches)) {
+            tips.put(branch, heads.get(branch));
+        }
+        return tips;
+    }
+
+    /**
+     * 以 ls-remote 比對遠端分支頂端與上次同步的水位，不 fetch 任何物件
+     * @param effdate 預計同步的起始時間，早於已同步範圍時視為 CHANGED；null 表示只比對頂端
+     */
+    public List<BranchChange> detectChanges(String repoUrl, String username, String password, LocalDateTime effdate, List<String> in_branches) throws Exception {
+        return compareWithWatermarks(repoUrl, gitMirrorStore.lsRemote(repoUrl, username, password), effdate, in_branches);
+    }
+
+    private List<BranchChange> compareWithWatermarks(String repoUrl, Map<String, ObjectId> heads, LocalDateTime effdate, List<String> in_branches) {
+        Map<String, SyncWatermark> watermarks = new HashMap<>();
+        for (SyncWatermark watermark : syncWatermarkRepository.findByGitUrl(repoUrl)) {
+            watermarks.put(BranchSelector.simpleBranchName(watermark.getBranchName()), watermark);
+        }
+        List<BranchChange> changes = new ArrayList<>();
+        for (String branch : branchSelector.select(heads.keySet(), in_branches)) {
+            String remoteTip = heads.get(branch).getName();
+            SyncWatermark watermark = watermarks.get(branch);
+            String status;
+            if (watermark == null) {
+                status = BranchChange.STATUS_NEW;
+            } else if (!remoteTip.equals(watermark.getTipCommit())
+                    || (effdate != null && effdate.isBefore(watermark.getSyncedFrom()))) {
+                status = BranchChange.STATUS_CHANGED;
+            } else {
+                status = BranchChange.STATUS_UNCHANGED;
+            }
+            changes.add(new BranchChange(branch, remoteTip, watermark != null ? watermark.getTipCommit() : null, status));
+        }
+        for (String branch : branchSelector.select(watermarks.keySet(), in_branches)) {
+            if (!heads.containsKey(branch)) {
+                changes.add(new BranchChange(branch, null, watermarks.get(branch).getTipCommit(), BranchChange.STATUS_DELETED));
             }
-            git = cloneCommand.call();
-            List<org.eclipse.jgit.lib.Ref> branches = git.branchList().setListMode(org.eclipse.jgit.api.ListBranchCommand.ListMode.ALL).call();
-            for (org.eclipse.jgit.lib.Ref branchRef : branches) {
+        }
+        return changes;
+    }
+
+    /**
+     * 增量同步：依 SyncWatermark 記錄的上次分支頂端，只走訪新的 commit 並寫入 WorkLog
+     * @return 新增與更新的 WorkLog 筆數
+     */
+    public WorkLogBulkWriter.UpsertResult syncBranchesIncrementally(String repoUrl, String username, String password, LocalDateTime effdate, LocalDateTime expdate, List<String> in_branches) throws Exception {
+        return syncBranchesIncrementally(repoUrl, username, password, effdate, expdate, in_branches, new SyncProgress());
+    }
+
+    /**
+     * 同上，並將各階段進度回報至 progress；progress 被取消時於分支之間丟出 CancellationException
+     */
+    public WorkLogBulkWriter.UpsertResult syncBranchesIncrementally(String repoUrl, String username, String password, LocalDateTime effdate, LocalDateTime expdate, List<String> in_branches,
+                                                                    SyncProgress progress) throws Exception {
+        WorkLogBulkWriter.UpsertResult written = new WorkLogBulkWriter.UpsertResult();
+        progress.setPhase(SyncProgress.PHASE_LISTING);
+        // 先以 ls-remote 比對水位，只處理有變動的分支；全部沒有變動時不 fetch 也不開啟 mirror
+        Map<String, ObjectId> heads = gitMirrorStore.lsRemote(repoUrl, username, password);
+        Map<String, ObjectId> changedTips = new LinkedHashMap<>();
+        for (BranchChange change : compareWithWatermarks(repoUrl, heads, effdate, in_branches)) {
+            if (change.needsSync()) {
+                changedTips.put(change.getBranch(), heads.get(change.getBranch()));
+            }
+        }
+        progress.checkCancelled();
+        if (changedTips.isEmpty()) {
+            progress.setPhase(SyncProgress.PHASE_DONE);
+            return written;
+        }
+        progress.setPhase(SyncProgress.PHASE_FETCHING);
+        try (GitMirrorStore.MirrorLease lease = gitMirrorStore.openAtTips(repoUrl, username, password, changedTips, progress)) {
+            Repository repository = lease.getRepository();
+            for (Ref branchRef : branchRefs(repository, new ArrayList<>(changedTips.keySet()))) {
+                progress.checkCancelled();
                 String branchName = branchRef.getName();
-                // 支援 in_branches 傳入不帶 'refs/remotes/' 前綴的分支名稱
-                String simpleBranchName = branchName.startsWith("refs/remotes/") ? branchName.substring("refs/remotes/".length()) : branchName;
-                if (in_branches != null && !in_branches.isEmpty()) {
-                    boolean match = false;
-                    for (String b : in_branches) {
-                        if (b.equals(branchName) || b.equals(simpleBranchName)) {
-                            match = true;
-                            break;
-                        }
+                SyncWatermark watermark = syncWatermarkRepository.findByGitUrlAndBranchName(repoUrl, branchName).orElse(null);
+                List<WorkLog> workLogs = new ArrayList<>();
+                boolean incremental = false;
+                boolean truncated = false;
+                ObjectId uninteresting = null;
+                if (watermark != null && !effdate.isBefore(watermark.getSyncedFrom())) {
+                    ObjectId lastTip = ObjectId.fromString(watermark.getTipCommit());
+                    // 上次的頂端已不存在（例如 force push）時改為完整走訪
+                    if (repository.getObjectDatabase().has(lastTip)) {
+                        uninteresting = lastTip;
+                        incremental = true;
                     }
-                    if (!match) {
+                }
+                // 不限制結束時間，以便判斷是否有 expdate 之後的 commit
+                progress.setPhase(SyncProgress.PHASE_WALKING);
+                List<RevCommit> walked = commitWalker.walk(repository, branchRef.getObjectId(), uninteresting, effdate, null, true);
+                progress.addCommitsWalked(walked.size());
+                progress.checkCancelled();
+                for (RevCommit commit : walked) {
+                    LocalDateTime commitDate = commit.getAuthorIdent().getWhen().toInstant()
+                            .atZone(ZoneId.systemDefault())
+                            .toLocalDateTime();
+                    if (commitDate.isAfter(expdate)) {
+                        truncated = true;
                         continue;
                     }
+                    workLogs.add(toWorkLog(commit, branchName, repoUrl));
                 }
-                // 排除 origin/sit 與 origin/master
-                if (!branchName.startsWith("refs/remotes") || branchName.endsWith("origin/sit") || branchName.endsWith("origin/master")|| branchName.endsWith("origin/preproduction")) {
-                    continue;
-                }
-                Iterable<RevCommit> commits = git.log().add(branchRef.getObjectId()).call();
-                List<RevCommit> commitList = new ArrayList<>();
-                    for (RevCommit commit : commits) {
-                        LocalDateTime commitDate = commit.getAuthorIdent().getWhen().toInstant()
-                                .atZone(ZoneId.systemDefault())
-                                .toLocalDateTime();
-                        // 排除 merge commit
-                        String msg = commit.getFullMessage();
-                        if (msg != null && msg.startsWith("Merge branch")) {
-                            continue;
-                        }
-                        if ((commitDate.isEqual(effdate) || commitDate.isAfter(effdate)) &&
-                            (commitDate.isEqual(expdate) || commitDate.isBefore(expdate))) {
-                            commitList.add(commit);
-                        }
+                if (!workLogs.isEmpty()) {
+                    progress.setPhase(SyncProgress.PHASE_WRITING);
+                    WorkLogBulkWriter.UpsertResult result = syncWorkLogsToDatabase(workLogs);
+                    written.add(result);
+                    progress.addRowsWritten(result.getTotal());
                 }
-                if (!commitList.isEmpty()) {
-                    branchCommits.put(branchName, commitList);
+                // 區間結束時間之後還有 commit 時不推進水位，避免下次同步漏掉這些 commit
+                if (!truncated) {
+                    if (watermark == null) {
+                        watermark = new SyncWatermark();
+                        watermark.setGitUrl(repoUrl);
+                        watermark.setBranchName(branchName);
+                    }
+                    watermark.setTipCommit(branchRef.getObjectId().getName());
+                    watermark.setSyncedFrom(incremental ? watermark.getSyncedFrom() : effdate);
+                    watermark.setUpdateDateTime(LocalDateTime.now());
+                    syncWatermarkRepository.save(watermark);
                 }
             }
-        } finally {
-            if (git != null) {
-                git.close();
-            }
-            if (localPath.exists()) {
-                localPath.delete();
-            }
         }
-        return branchCommits;
+        progress.setPhase(SyncProgress.PHASE_DONE);
+        return written;
     }
 
+    /**
+     * 將 commit 轉為 WorkLog（作者與訊息轉大寫，並記錄分支與 gitUrl）
+     */
+    public WorkLog toWorkLog(RevCommit commit, String branchName, String repoUrl) {
+        WorkLog workLog = new WorkLog();
+        LocalDateTime commitDateTime = Instant.ofEpochSecond(commit.getCommitTime())
+                .atZone(ZoneId.systemDefault())
+                .toLocalDateTime();
+        workLog.setCommitHash(commit.getName());
+        workLog.setAuthorName(commit.getAuthorIdent().getName().toUpperCase());
+        workLog.setMessage(commit.getShortMessage().toUpperCase());
+        workLog.setCommitDateTime(commitDateTime);
+        workLog.setBranchName(branchName);
+        workLog.setGitUrl(repoUrl);
+        workLog.setUpdateDateTime(LocalDateTime.now());
+        return workLog;
+    }
 
-
-}
\ No newline at end of file
+    /**
+     * 取得 mirror 中指定分支的 ref（refs/remotes/origin/...）
+     */
+    private List<Ref> branchRefs(Repository repository, List<String> branches) throws Exception {
+        List<Ref> refs = new ArrayList<>();
+        for (String branch : branches) {
+            Ref ref = repository.exactRef(GitMirrorStore.REMOTE_BRANCH_PREFIX + branch);
+            if (ref != null) {
+                refs.add(ref);
+            }
+        }
+        return refs;
+    }
+}
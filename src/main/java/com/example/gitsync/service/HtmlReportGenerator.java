@@ -1,8 +1,10 @@
 package com.example.gitsync.service;
 
-import org.eclipse.jgit.revwalk.RevCommit;
 import org.springframework.stereotype.Component;
+import org.springframework.web.util.HtmlUtils;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
@@ -10,7 +12,6 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Component
 public class HtmlReportGenerator {
@@ -21,61 +22,109 @@ public class HtmlReportGenerator {
         this.workHourCalculator = workHourCalculator;
     }
 
-    public String generate(List<RevCommit> commits) {
-        // 1. 處理資料：將 commits 按日期和時間段分組
-        Map<LocalDate, Map<LocalTime, List<RevCommit>>> groupedByDayAndSlot = commits.stream()
-            .collect(Collectors.groupingBy(
-                commit -> LocalDateTime.ofInstant(commit.getAuthorIdent().getWhen().toInstant(), ZoneId.systemDefault()).toLocalDate(),
-                TreeMap::new, // 按日期排序
-                Collectors.groupingBy(
-                    commit -> workHourCalculator.getTimeSlot(LocalDateTime.ofInstant(commit.getAuthorIdent().getWhen().toInstant(), ZoneId.systemDefault())),
-                    TreeMap::new, // 按時間段排序
-                    Collectors.toList()
-                )
-            ));
-
-        // 2. 建立 HTML
-        StringBuilder html = new StringBuilder();
+    /**
+     * 工時報告的頁首與表頭
+     */
+    public void writeReportHeader(Writer html) throws IOException {
         appendHtmlHeader(html);
+        html.flush();
+    }
 
-        // 3. 遍歷處理好的資料來產生表格內容
-        for (Map.Entry<LocalDate, Map<LocalTime, List<RevCommit>>> dayEntry : groupedByDayAndSlot.entrySet()) {
+    /**
+     * 工時報告的資料列與頁尾；資料已完整取得，每寫完一天即 flush，回應以 chunked 方式送出、不在伺服器端累積整頁
+     */
+    public void writeReportRows(CommitTable commits, Writer html) throws IOException {
+        // 1. 處理資料：將 commits 按日期和時間段分組
+        Map<LocalDate, Map<LocalTime, List<Integer>>> groupedByDayAndSlot = new TreeMap<>(); // 按日期排序
+        for (int row = 0; row < commits.size(); row++) {
+            groupedByDayAndSlot.computeIfAbsent(commits.date(row), k -> new TreeMap<>()) // 按時間段排序
+                    .computeIfAbsent(workHourCalculator.getTimeSlot(commits.dateTime(row)), k -> new ArrayList<>())
+                    .add(row);
+        }
+
+        // 2. 遍歷處理好的資料來產生表格內容
+        for (Map.Entry<LocalDate, Map<LocalTime, List<Integer>>> dayEntry : groupedByDayAndSlot.entrySet()) {
             LocalDate date = dayEntry.getKey();
-            Map<LocalTime, List<RevCommit>> slots = dayEntry.getValue();
+            Map<LocalTime, List<Integer>> slots = dayEntry.getValue();
             double dailyTotalHours = 0;
 
-            // 取得每個時間段的資料
-            String slot06 = generateSlotHtml(slots.get(LocalTime.of(6, 0)));
-            String slot14 = generateSlotHtml(slots.get(LocalTime.of(14, 0)));
-            String slot18 = generateSlotHtml(slots.get(LocalTime.of(18, 0)));
-            String slot20 = generateSlotHtml(slots.get(LocalTime.of(20, 0)));
-            
             // 計算每日總工時
-            dailyTotalHours += calculateSlotHours(slots.get(LocalTime.of(6, 0)));
-            dailyTotalHours += calculateSlotHours(slots.get(LocalTime.of(14, 0)));
-            dailyTotalHours += calculateSlotHours(slots.get(LocalTime.of(18, 0)));
-            dailyTotalHours += calculateSlotHours(slots.get(LocalTime.of(20, 0)));
+            dailyTotalHours += calculateSlotHours(commits, slots.get(LocalTime.of(6, 0)));
+            dailyTotalHours += calculateSlotHours(commits, slots.get(LocalTime.of(14, 0)));
+            dailyTotalHours += calculateSlotHours(commits, slots.get(LocalTime.of(18, 0)));
+            dailyTotalHours += calculateSlotHours(commits, slots.get(LocalTime.of(20, 0)));
 
             // 產生一天的 row
             html.append("<tr>")
                 .append("<td>").append(date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")))
                 .append(" (").append(date.getDayOfWeek().getDisplayName(TextStyle.FULL, Locale.TAIWAN)).append(")")
-                .append("</td>")
-                .append("<td>").append(slot06).append("</td>")
-                .append("<td>").append(slot14).append("</td>")
-                .append("<td>").append(slot18).append("</td>")
-                .append("<td>").append(slot20).append("</td>")
+                .append("</td>");
+            html.append("<td>");
+            writeSlotHtml(commits, slots.get(LocalTime.of(6, 0)), html);
+            html.append("</td><td>");
+            writeSlotHtml(commits, slots.get(LocalTime.of(14, 0)), html);
+            html.append("</td><td>");
+            writeSlotHtml(commits, slots.get(LocalTime.of(18, 0)), html);
+            html.append("</td><td>");
+            writeSlotHtml(commits, slots.get(LocalTime.of(20, 0)), html);
+            html.append("</td>")
                 .append("<td class='total-hours'>").append(String.format("%.2f", dailyTotalHours)).append(" 小時</td>")
                 .append("</tr>");
+            html.flush();
         }
 
         appendHtmlFooter(html);
-        return html.toString();
+        html.flush();
+    }
+
+    /**
+     * CTBC 人天報告的資料列與頁尾：以（倉庫+）分支+作者+日期分組，每組一列，commit 欄顯示所有 commit；
+     * 資料已完整取得，每寫完一個分支即 flush，回應以 chunked 方式送出、不在伺服器端累積整頁
+     */
+    public void writeCtbcReportRows(CommitTable commits, Writer html) throws IOException {
+        int totalDays = 0;
+        for (int branch = 0; branch < commits.branchCount(); branch++) {
+            String repoCell = commits.hasRepos() ? "<td>" + HtmlUtils.htmlEscape(commits.repoName(branch)) + "</td>" : "";
+            String branchCell = HtmlUtils.htmlEscape(commits.branchName(branch));
+            int[] days = new int[1];
+            commits.forEachAuthorDay(branch, (author, date, rows) -> {
+                html.append("<tr>")
+                    .append(repoCell)
+                    .append("<td>").append(branchCell).append("</td>")
+                    .append("<td>");
+                for (int i = 0; i < rows.length; i++) {
+                    if (i > 0) {
+                        html.append("</BR> ");
+                    }
+                    html.append(HtmlUtils.htmlEscape(commits.shortMessage(rows[i])))
+                        .append(" [").append(commits.shortHash(rows[i])).append("]");
+                }
+                html.append("</td>")
+                    .append("<td>").append(HtmlUtils.htmlEscape(author)).append("</td>")
+                    .append("<td>").append(date.toString()).append("</td>")
+                    .append("<td>1</td>")
+                    .append("</tr>");
+                days[0]++;
+            });
+            totalDays += days[0];
+            html.flush();
+        }
+        html.append("<tr><td colspan='").append(commits.hasRepos() ? "5" : "4").append("' class='total-days'>總人天</td><td class='total-days'>").append(String.valueOf(totalDays)).append("</td></tr>");
+        html.append("</table></body></html>");
+        html.flush();
+    }
+
+    /**
+     * CTBC 人天報告的頁首與表頭
+     */
+    public void writeCtbcReportHeader(Writer html) throws IOException {
+        writeCtbcReportHeader(html, false);
     }
 
-    public String generateCtbcReport(Map<String, List<RevCommit>> branchCommitsMap) {
-        // 以分支+作者+日期分組，每組一列，commit 欄顯示所有 commit hash
-        StringBuilder html = new StringBuilder();
+    /**
+     * @param withRepo 多個倉庫合併的報表，第一欄顯示倉庫
+     */
+    public void writeCtbcReportHeader(Writer html, boolean withRepo) throws IOException {
         html.append("<!DOCTYPE html><html lang='zh-Hant'><head><meta charset='UTF-8'><title>CTBC 人天報告</title>");
         html.append("<style>")
             .append("body { font-family: 'Segoe UI', sans-serif; margin: 20px; background-color: #f4f7f6; }")
@@ -86,81 +135,48 @@ public class HtmlReportGenerator {
             .append("tr:nth-child(even) { background-color: #f2f2f2; }")
             .append(".total-days { font-weight: bold; background-color: #e9ecef; color: #d9534f; }")
             .append("</style></head><body><h1>CTBC 人天報告</h1><table>");
-        html.append("<tr><th>分支</th><th>commit</th><th>作者</th><th>日期</th><th>人天</th></tr>");
+        html.append("<tr>").append(withRepo ? "<th>倉庫</th>" : "").append("<th>分支</th><th>commit</th><th>作者</th><th>日期</th><th>人天</th></tr>");
+        html.flush();
+    }
 
-        int totalDays = 0;
-        // 分組：分支+作者+日期
-        Map<String, Map<String, Map<LocalDate, List<RevCommit>>>> groupMap = new HashMap<>();
-        for (Map.Entry<String, List<RevCommit>> entry : branchCommitsMap.entrySet()) {
-            String branch = entry.getKey();
-            for (RevCommit commit : entry.getValue()) {
-                String author = commit.getAuthorIdent().getName();
-                LocalDate date = LocalDateTime.ofInstant(commit.getAuthorIdent().getWhen().toInstant(), ZoneId.systemDefault()).toLocalDate();
-                groupMap.computeIfAbsent(branch, k -> new HashMap<>())
-                        .computeIfAbsent(author, k -> new HashMap<>())
-                        .computeIfAbsent(date, k -> new ArrayList<>())
-                        .add(commit);
-            }
-        }
-        for (String branch : groupMap.keySet()) {
-            Map<String, Map<LocalDate, List<RevCommit>>> authorMap = groupMap.get(branch);
-            for (String author : authorMap.keySet()) {
-                Map<LocalDate, List<RevCommit>> dateMap = authorMap.get(author);
-                for (LocalDate date : dateMap.keySet()) {
-                    List<RevCommit> commits = dateMap.get(date);
-                    String commitStr = commits.stream()
-                        .map(c -> c.getShortMessage() + " [" + c.getName().substring(0, 7) + "]")
-                        .collect(Collectors.joining("</BR> "));
-                    html.append("<tr>")
-                        .append("<td>").append(branch).append("</td>")
-                        .append("<td>").append(commitStr).append("</td>")
-                        .append("<td>").append(author).append("</td>")
-                        .append("<td>").append(date).append("</td>")
-                        .append("<td>1</td>")
-                        .append("</tr>");
-                    totalDays++;
-                }
-            }
-        }
-        html.append("<tr><td colspan='4' class='total-days'>總人天</td><td class='total-days'>").append(totalDays).append("</td></tr>");
-        html.append("</table></body></html>");
-        return html.toString();
-    }    
+    /**
+     * 表頭已送出後產生報告發生錯誤：在表格後顯示錯誤訊息並結束頁面
+     */
+    public void writeReportError(Writer html, String message) throws IOException {
+        html.append("</table><h1>產生報告失敗</h1><p>").append(HtmlUtils.htmlEscape(String.valueOf(message))).append("</p></body></html>");
+        html.flush();
+    }
 
-    private double calculateSlotHours(List<RevCommit> slotCommits) {
-        if (slotCommits == null || slotCommits.isEmpty()) {
+    private double calculateSlotHours(CommitTable commits, List<Integer> slotRows) {
+        if (slotRows == null || slotRows.isEmpty()) {
             return 0;
         }
         // 找到這個時間段中最新的 commit
-        RevCommit lastCommit = slotCommits.stream()
-            .max(Comparator.comparing(RevCommit::getCommitTime))
-            .orElse(null);
-        
-        if(lastCommit == null) return 0;
-
-        LocalDateTime commitTime = LocalDateTime.ofInstant(lastCommit.getAuthorIdent().getWhen().toInstant(), ZoneId.systemDefault());
-        return workHourCalculator.calculateHours(commitTime);
+        int lastRow = slotRows.get(0);
+        for (int row : slotRows) {
+            if (commits.epochSecond(row) > commits.epochSecond(lastRow)) {
+                lastRow = row;
+            }
+        }
+        return workHourCalculator.calculateHours(commits.dateTime(lastRow));
     }
 
-    private String generateSlotHtml(List<RevCommit> slotCommits) {
-        if (slotCommits == null || slotCommits.isEmpty()) {
-            return "";
+    private void writeSlotHtml(CommitTable commits, List<Integer> slotRows, Writer html) throws IOException {
+        if (slotRows == null || slotRows.isEmpty()) {
+            return;
         }
-        double hours = calculateSlotHours(slotCommits);
-        
-        StringBuilder content = new StringBuilder();
-        content.append("<div class='hours'>工時: ").append(String.format("%.2f", hours)).append(" 小時</div>");
-        content.append("<ul class='commit-list'>");
-        for (RevCommit commit : slotCommits) {
-            LocalDateTime commitTime = LocalDateTime.ofInstant(commit.getAuthorIdent().getWhen().toInstant(), ZoneId.systemDefault());
-            String formattedTime = commitTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            content.append("<li>").append(commit.getShortMessage()).append(" (提交時間: ").append(formattedTime).append(")</li>");
+        double hours = calculateSlotHours(commits, slotRows);
+
+        html.append("<div class='hours'>工時: ").append(String.format("%.2f", hours)).append(" 小時</div>");
+        html.append("<ul class='commit-list'>");
+        for (int row : slotRows) {
+            String formattedTime = commits.dateTime(row).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+            html.append("<li>").append(HtmlUtils.htmlEscape(commits.shortMessage(row))).append(" (提交時間: ").append(formattedTime).append(")</li>");
         }
-        content.append("</ul>");
-        return content.toString();
+        html.append("</ul>");
     }
 
-    private void appendHtmlHeader(StringBuilder html) {
+    private void appendHtmlHeader(Writer html) throws IOException {
         html.append("<!DOCTYPE html><html lang='zh-Hant'><head><meta charset='UTF-8'><title>工時報告</title>");
         html.append("<style>")
             .append("body { font-family: 'Segoe UI', sans-serif; margin: 20px; background-color: #f4f7f6; }")
@@ -176,7 +192,7 @@ public class HtmlReportGenerator {
             .append("<tr><th>日期</th><th>06:00 時段</th><th>14:00 時段</th><th>18:00 時段</th><th>20:00 時段</th><th>當日總計</th></tr>");
     }
 
-    private void appendHtmlFooter(StringBuilder html) {
+    private void appendHtmlFooter(Writer html) throws IOException {
         html.append("</table></body></html>");
     }
 }
\ No newline at end of file
@@ -0,0 +1,193 @@
+package com.example.gitsync.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 報表資料來源的統一入口：依 source（clone / gitlab / db）取得 commit 表，並支援一次查詢多個倉庫。
+ * 多個倉庫時各倉庫平行 fetch 與走訪（同時進行的倉庫數由 gitsync.report.repo-parallelism 限制，所有請求共用），
+ * 完成後合併為一張以倉庫為額外維度的表，總耗時接近最慢的倉庫而非各倉庫加總。
+ * 相同倉庫、區間、分支與帳密的並行請求（例如月底多人同時產生報表）共用同一次 fetch 與走訪，
+ * CommitTable 為唯讀，各請求再各自輸出 HTML / Excel。
+ * clone 來源每次實際 fetch 與走訪一個倉庫時各取得一個准入名額（合併到執行中請求的呼叫端不佔名額），
+ * 同一個 HTTP 請求的所有倉庫共用一個 WalkBudget。
+ */
+@Component
+public class MultiRepoReportSource {
+
+    private final GitService gitService;
+    private final GitLabReportSource gitLabReportSource;
+    private final WorkLogReportSource workLogReportSource;
+    private final AdmissionControl admissionControl;
+    private final ExecutorService repoPool;
+    private final SingleFlight<CommitTable> reportFlights = new SingleFlight<>();
+
+    public MultiRepoReportSource(GitService gitService, GitLabReportSource gitLabReportSource, WorkLogReportSource workLogReportSource,
+                                 AdmissionControl admissionControl,
+                                 @Value("${gitsync.report.repo-parallelism:4}") int repoParallelism) {
+        this.gitService = gitService;
+        this.gitLabReportSource = gitLabReportSource;
+        this.workLogReportSource = workLogReportSource;
+        this.admissionControl = admissionControl;
+        this.repoPool = Executors.newFixedThreadPool(Math.max(1, repoParallelism), runnable -> {
+            Thread thread = new Thread(runnable, "report-repo");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        repoPool.shutdownNow();
+    }
+
+    /**
+     * 取得單一倉庫指定時間區間內各分支的 commit；與執行中的相同請求合併
+     * @param source clone：fetch mirror 後走訪；gitlab：GitLab API（password 為 Personal Access Token）；db：已同步的 WorkLog
+     * @param budget 此 HTTP 請求的走訪上限（clone 來源），由 {@link AdmissionControl#newBudget()} 建立
+     * @throws AdmissionRejectedException clone 來源同時執行的請求已達上限
+     */
+    public CommitTable fetch(String source, String repoUrl, String username, String password,
+                             LocalDateTime effdate, LocalDateTime expdate, List<String> in_branches, WalkBudget budget) throws Exception {
+        String key = SingleFlight.key(source.toLowerCase(), repoUrl.trim(), username, password, effdate, expdate, branchKey(in_branches));
+        return reportFlights.execute(key, () -> load(source, repoUrl, username, password, effdate, expdate, in_branches, budget));
+    }
+
+    /**
+     * 報表資料的請求合併統計
+     */
+    public SingleFlight.Stats coalescingStats() {
+        return reportFlights.stats();
+    }
+
+    private CommitTable load(String source, String repoUrl, String username, String password,
+                             LocalDateTime effdate, LocalDateTime expdate, List<String> in_branches, WalkBudget budget) throws Exception {
+        if ("gitlab".equalsIgnoreCase(source)) {
+            // 透過 GitLab API 取得 commit，不需 clone
+            return CommitTable.fromGitCommits(gitLabReportSource.fetchCommitsByDateRange(repoUrl, password, effdate, expdate, in_branches));
+        } else if ("db".equalsIgnoreCase(source)) {
+            // 讀取已同步（含排程同步）的 WorkLog，不連線到 Git 倉庫
+            return CommitTable.fromGitCommits(workLogReportSource.fetchCommitsByDateRange(repoUrl, effdate, expdate, in_branches));
+        }
+        // 只有實際 fetch / 走訪的呼叫端佔用名額，合併到此次執行的請求等待期間不佔名額
+        AdmissionControl.Ticket ticket = admissionControl.admit();
+        try {
+            return gitService.fetchCommitTableByDateRange(repoUrl, username, password, effdate, expdate, in_branches, budget);
+        } finally {
+            ticket.close();
+        }
+    }
+
+    /**
+     * 取得多個倉庫的 commit 並合併；只有一個倉庫時與 {@link #fetch} 相同（報表不顯示倉庫欄）。
+     * 任一倉庫失敗即取消其餘倉庫並回報該倉庫的錯誤。
+     * @param repoUrls 倉庫 URL，應先經 {@link #normalizeRepoUrls} 整理
+     * @param budget 此 HTTP 請求的走訪上限，所有倉庫合計
+     */
+    public CommitTable fetchAll(String source, List<String> repoUrls, String username, String password,
+                                LocalDateTime effdate, LocalDateTime expdate, List<String> in_branches, WalkBudget budget) throws Exception {
+        if (repoUrls.size() == 1) {
+            return fetch(source, repoUrls.get(0), username, password, effdate, expdate, in_branches, budget);
+        }
+        List<Future<CommitTable>> futures = new ArrayList<>();
+        for (String repoUrl : repoUrls) {
+            futures.add(repoPool.submit(() -> fetch(source, repoUrl, username, password, effdate, expdate, in_branches, budget)));
+        }
+        List<String> repoNames = new ArrayList<>();
+        List<CommitTable> tables = new ArrayList<>();
+        try {
+            for (int i = 0; i < repoUrls.size(); i++) {
+                try {
+                    tables.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    // 上限為整個請求共用，超過時不特別指出倉庫；准入拒絕保留原本的 429 / 503
+                    if (e.getCause() instanceof WalkBudgetExceededException) {
+                        throw (WalkBudgetExceededException) e.getCause();
+                    }
+                    if (e.getCause() instanceof AdmissionRejectedException) {
+                        throw (AdmissionRejectedException) e.getCause();
+                    }
+                    throw new IOException("倉庫 " + repoUrls.get(i) + " 取得 commit 失敗：" + e.getCause().getMessage(), e.getCause());
+                }
+                repoNames.add(repoName(repoUrls.get(i)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("取得多個倉庫的 commit 時被中斷");
+        } finally {
+            // 不中斷執行中的倉庫：其他請求可能正在等待同一次 fetch（見 fetch 的請求合併）
+            futures.forEach(f -> f.cancel(false));
+        }
+        return CommitTable.merge(repoNames, tables);
+    }
+
+    /**
+     * 指定分支排序後串接（與報表快取 key 相同的正規化），null 表示全部
+     */
+    private static String branchKey(List<String> in_branches) {
+        if (in_branches == null || in_branches.isEmpty()) {
+            return "*";
+        }
+        TreeSet<String> requested = new TreeSet<>();
+        for (String branch : in_branches) {
+            requested.add(BranchSelector.simpleBranchName(branch));
+        }
+        return String.join(",", requested);
+    }
+
+    /**
+     * 整理表單傳入的倉庫 URL：允許以逗號、空白或換行分隔，去除空白與重複並保留順序
+     */
+    public static List<String> normalizeRepoUrls(List<String> repoUrls) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (repoUrls != null) {
+            for (String value : repoUrls) {
+                for (String repoUrl : value.split("[,\\s]+")) {
+                    if (!repoUrl.isEmpty()) {
+                        normalized.add(repoUrl);
+                    }
+                }
+            }
+        }
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("請至少輸入一個倉庫網址");
+        }
+        return new ArrayList<>(normalized);
+    }
+
+    /**
+     * 報表中顯示的倉庫名稱：URL 的路徑（不含 .git），例如 https://gitlab.example.com/group/project.git → group/project
+     */
+    public static String repoName(String repoUrl) {
+        String path = repoUrl.trim();
+        int scheme = path.indexOf("://");
+        if (scheme >= 0) {
+            int slash = path.indexOf('/', scheme + 3);
+            path = slash >= 0 ? path.substring(slash + 1) : "";
+        } else if (path.indexOf(':') > 0) {
+            // scp 形式：git@host:group/project.git
+            path = path.substring(path.indexOf(':') + 1);
+        }
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (path.endsWith(".git")) {
+            path = path.substring(0, path.length() - 4);
+        }
+        return path.isEmpty() ? repoUrl : path;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.gitsync.service;
+
+import com.example.gitsync.model.RegisteredRepo;
+import com.example.gitsync.model.SyncJob;
+import com.example.gitsync.repository.RegisteredRepoRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * 排程同步已登錄的倉庫，讓報表可直接讀取已同步的 WorkLog。
+ * 1. 定期檢查到期的倉庫，透過 SyncJobService 提交同步工作（進度與紀錄與手動同步相同）。
+ * 2. 下次同步時間加上隨機延遲，避免所有倉庫同時同步。
+ * 3. 同時執行的排程同步數有上限，超過時留待下次檢查。
+ */
+@Component
+public class RepoSyncScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(RepoSyncScheduler.class);
+
+    /** 憑證只能由此前綴下的設定取得，避免以 credentialRef 讀出資料庫密碼等其他設定 */
+    public static final String CREDENTIAL_PREFIX = "gitsync.credentials.";
+    private static final Pattern CREDENTIAL_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9_-]{0,99}");
+
+    private final RegisteredRepoRepository registeredRepoRepository;
+    private final SyncJobService syncJobService;
+    private final Environment environment;
+    private final boolean enabled;
+    private final int maxConcurrent;
+    private final long jitterSeconds;
+    // 執行中的排程同步：倉庫 id → 工作 id
+    private final Map<Long, String> inflight = new ConcurrentHashMap<>();
+
+    public RepoSyncScheduler(RegisteredRepoRepository registeredRepoRepository, SyncJobService syncJobService, Environment environment,
+                             @Value("${gitsync.schedule.enabled:true}") boolean enabled,
+                             @Value("${gitsync.schedule.max-concurrent:1}") int maxConcurrent,
+                             @Value("${gitsync.schedule.jitter-seconds:300}") long jitterSeconds) {
+        this.registeredRepoRepository = registeredRepoRepository;
+        this.syncJobService = syncJobService;
+        this.environment = environment;
+        this.enabled = enabled;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.jitterSeconds = Math.max(0, jitterSeconds);
+    }
+
+    @Scheduled(initialDelayString = "${gitsync.schedule.initial-delay-ms:30000}",
+            fixedDelayString = "${gitsync.schedule.poll-interval-ms:60000}")
+    public synchronized void tick() {
+        if (!enabled) {
+            return;
+        }
+        collectFinished();
+        LocalDateTime now = LocalDateTime.now();
+        // 新登錄的倉庫：第一次同步時間隨機分散
+        for (RegisteredRepo repo : registeredRepoRepository.findByEnabledTrueAndNextSyncDateTimeIsNull()) {
+            repo.setNextSyncDateTime(now.plusSeconds(jitter()));
+            registeredRepoRepository.save(repo);
+        }
+        for (RegisteredRepo repo : registeredRepoRepository.findByEnabledTrueAndNextSyncDateTimeBeforeOrderByNextSyncDateTime(now)) {
+            if (inflight.size() >= maxConcurrent) {
+                break;
+            }
+            if (inflight.containsKey(repo.getId())) {
+                continue;
+            }
+            try {
+                submit(repo, now);
+            } catch (RejectedExecutionException e) {
+                // 工作佇列已滿，下次檢查再提交
+                break;
+            }
+        }
+    }
+
+    /**
+     * 立即排入同步（下次檢查時提交）
+     */
+    public void syncNow(RegisteredRepo repo) {
+        repo.setNextSyncDateTime(LocalDateTime.now());
+        registeredRepoRepository.save(repo);
+    }
+
+    private void submit(RegisteredRepo repo, LocalDateTime now) {
+        String password = null;
+        if (repo.getCredentialRef() != null && !repo.getCredentialRef().isEmpty()) {
+            password = isValidCredentialRef(repo.getCredentialRef())
+                    ? environment.getProperty(CREDENTIAL_PREFIX + repo.getCredentialRef()) : null;
+            if (password == null) {
+                log.warn("Credential not found for registered repo {}", repo.getGitUrl());
+                repo.setLastStatus(SyncJob.STATUS_FAILED);
+                repo.setNextSyncDateTime(nextSyncTime(repo, now));
+                registeredRepoRepository.save(repo);
+                return;
+            }
+        }
+        SyncJob job = syncJobService.submitBranchSync(repo.getGitUrl(), repo.getUsername(), password,
+                now.minusDays(repo.getLookbackDays()), now, branchList(repo));
+        inflight.put(repo.getId(), job.getJobId());
+        repo.setLastJobId(job.getJobId());
+        repo.setLastStatus(job.getStatus());
+        // 先排定下次時間；服務在同步途中重新啟動時仍會再次同步
+        repo.setNextSyncDateTime(nextSyncTime(repo, now));
+        registeredRepoRepository.save(repo);
+    }
+
+    /**
+     * 已結束的排程同步：記錄結果，下次同步時間由結束時間起算
+     */
+    private void collectFinished() {
+        List<String> done = Arrays.asList(SyncJob.STATUS_SUCCEEDED, SyncJob.STATUS_FAILED, SyncJob.STATUS_CANCELLED);
+        for (Map.Entry<Long, String> entry : new ArrayList<>(inflight.entrySet())) {
+            Optional<SyncJob> job = syncJobService.find(entry.getValue());
+            if (job.isPresent() && !done.contains(job.get().getStatus())) {
+                continue;
+            }
+            inflight.remove(entry.getKey());
+            registeredRepoRepository.findById(entry.getKey()).ifPresent(repo -> {
+                LocalDateTime end = job.map(SyncJob::getEndDateTime).orElse(LocalDateTime.now());
+                repo.setLastStatus(job.map(SyncJob::getStatus).orElse(SyncJob.STATUS_FAILED));
+                repo.setLastSyncDateTime(end);
+                repo.setNextSyncDateTime(nextSyncTime(repo, end));
+                registeredRepoRepository.save(repo);
+            });
+        }
+    }
+
+    /**
+     * credentialRef 只能是憑證名稱（英數字、底線、減號），實際取用 gitsync.credentials.{名稱}
+     */
+    public static boolean isValidCredentialRef(String credentialRef) {
+        return credentialRef != null && CREDENTIAL_NAME.matcher(credentialRef).matches();
+    }
+
+    private LocalDateTime nextSyncTime(RegisteredRepo repo, LocalDateTime from) {
+        return from.plusMinutes(Math.max(1, repo.getSyncIntervalMinutes())).plusSeconds(jitter());
+    }
+
+    private long jitter() {
+        return jitterSeconds > 0 ? ThreadLocalRandom.current().nextLong(jitterSeconds + 1) : 0;
+    }
+
+    private static List<String> branchList(RegisteredRepo repo) {
+        if (repo.getBranchNames() == null || repo.getBranchNames().trim().isEmpty()) {
+            return null;
+        }
+        List<String> branches = new ArrayList<>();
+        for (String branch : repo.getBranchNames().split(",")) {
+            if (!branch.trim().isEmpty()) {
+                branches.add(branch.trim());
+            }
+        }
+        return branches;
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.gitsync.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * 報表結果快取（HTML / Excel 的完整輸出內容）。
+ * key 包含選定分支目前的頂端 commit，任何 push 都會產生新的 key，舊內容不再命中，之後依 LRU / TTL 淘汰；
+ * 倉庫沒有變動時直接回傳已產生的內容，不必 fetch 與走訪。
+ */
+@Component
+public class ReportCache {
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final long ttlMillis;
+
+    /** access-order：最久未使用的在最前面 */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    public ReportCache(@Value("${gitsync.report-cache.enabled:true}") boolean enabled,
+                       @Value("${gitsync.report-cache.max-entries:100}") int maxEntries,
+                       @Value("${gitsync.report-cache.max-size-mb:128}") long maxSizeMb,
+                       @Value("${gitsync.report-cache.max-entry-size-mb:16}") long maxEntrySizeMb,
+                       @Value("${gitsync.report-cache.ttl-minutes:60}") long ttlMinutes) {
+        this.enabled = enabled && maxEntries > 0 && maxSizeMb > 0;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxSizeMb * 1024 * 1024;
+        this.maxEntryBytes = Math.min(maxEntrySizeMb * 1024 * 1024, this.maxBytes);
+        this.ttlMillis = ttlMinutes * 60_000;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 組出快取 key；分支頂端與指定分支都先排序，參數順序不同也會得到相同的 key
+     * @param source 資料來源（clone / gitlab）
+     * @param branchTips 分支名稱 → 頂端 commit id
+     * @param in_branches 使用者指定的分支，null 表示全部
+     * @param format 輸出格式，例如 ctbc-html、xlsx
+     */
+    public static String key(String source, String repoUrl, Map<String, String> branchTips, LocalDateTime effdate, LocalDateTime expdate,
+                             List<String> in_branches, String format) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(source.toLowerCase()).append('|').append(repoUrl.trim())
+          .append('|').append(effdate).append('|').append(expdate).append('|').append(format).append('|');
+        if (in_branches != null && !in_branches.isEmpty()) {
+            TreeSet<String> requested = new TreeSet<>();
+            for (String branch : in_branches) {
+                requested.add(BranchSelector.simpleBranchName(branch));
+            }
+            sb.append(String.join(",", requested));
+        } else {
+            sb.append('*');
+        }
+        for (Map.Entry<String, String> tip : new TreeMap<>(branchTips).entrySet()) {
+            sb.append('|').append(tip.getKey()).append('=').append(tip.getValue());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return 快取的報表內容；未命中或已過期時回傳 null
+     */
+    public synchronized byte[] get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.createdAt > ttlMillis) {
+            remove(key, entry);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.content;
+    }
+
+    public synchronized void put(String key, byte[] content) {
+        if (!enabled || content.length > maxEntryBytes) {
+            return;
+        }
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            totalBytes -= previous.content.length;
+        }
+        entries.put(key, new Entry(content, System.currentTimeMillis()));
+        totalBytes += content.length;
+        // 依 LRU 淘汰，直到筆數與總大小都在上限內
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            totalBytes -= eldest.getValue().content.length;
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * 包裝回應串流：寫出的內容同時保留一份，呼叫 {@link Recorder#commit()} 後才放入快取。
+     * 超過單筆上限時停止保留，輸出照常進行。
+     */
+    public Recorder record(String key, OutputStream out) {
+        return new Recorder(key, out);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(entries.size(), totalBytes, hits, misses, evictions, expirations);
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        totalBytes -= entry.content.length;
+    }
+
+    private static class Entry {
+        final byte[] content;
+        final long createdAt;
+
+        Entry(byte[] content, long createdAt) {
+            this.content = content;
+            this.createdAt = createdAt;
+        }
+    }
+
+    public class Recorder extends FilterOutputStream {
+        private final String key;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        Recorder(String key, OutputStream out) {
+            super(out);
+            this.key = key;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (keep(1)) {
+                copy.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (keep(len)) {
+                copy.write(b, off, len);
+            }
+        }
+
+        private boolean keep(int len) {
+            if (copy != null && copy.size() + len > maxEntryBytes) {
+                copy = null;
+            }
+            return copy != null;
+        }
+
+        /**
+         * 報表已完整輸出：放入快取
+         */
+        public void commit() {
+            if (copy != null) {
+                put(key, copy.toByteArray());
+                copy = null;
+            }
+        }
+    }
+
+    public static class Stats {
+        private final int entries;
+        private final long bytes;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+
+        Stats(int entries, long bytes, long hits, long misses, long evictions, long expirations) {
+            this.entries = entries;
+            this.bytes = bytes;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public long getExpirations() {
+            return expirations;
+        }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+}
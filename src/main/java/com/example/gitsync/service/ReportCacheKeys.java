@@ -0,0 +1,78 @@
+package com.example.gitsync.service;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 依資料來源查詢分支頂端，組出報表快取 key。
+ * clone 來源以 ls-remote、gitlab 來源以分支 API 取得頂端，都不需要 fetch 或走訪 commit。
+ */
+@Component
+public class ReportCacheKeys {
+
+    public static final String FORMAT_CTBC_HTML = "ctbc-html";
+    public static final String FORMAT_XLSX = "xlsx";
+    public static final String FORMAT_XLSX_SHEET_PER_BRANCH = "xlsx-sheet-per-branch";
+
+    private final ReportCache reportCache;
+    private final GitService gitService;
+    private final GitLabReportSource gitLabReportSource;
+
+    public ReportCacheKeys(ReportCache reportCache, GitService gitService, GitLabReportSource gitLabReportSource) {
+        this.reportCache = reportCache;
+        this.gitService = gitService;
+        this.gitLabReportSource = gitLabReportSource;
+    }
+
+    /**
+     * 多個倉庫的快取 key：各倉庫的 key 依序串接，任一倉庫無法取得 key 時不使用快取；
+     * 只有一個倉庫時與單一倉庫的 key 相同
+     */
+    public String resolve(String source, List<String> repoUrls, String username, String password,
+                          LocalDateTime effdate, LocalDateTime expdate, List<String> in_branches, String format) {
+        StringBuilder key = new StringBuilder();
+        for (String repoUrl : repoUrls) {
+            String repoKey = resolve(source, repoUrl, username, password, effdate, expdate, in_branches, format);
+            if (repoKey == null) {
+                return null;
+            }
+            if (key.length() > 0) {
+                key.append('\n');
+            }
+            key.append(repoKey);
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return 快取 key；快取停用、資料來源不適用（db 內容隨同步變動，沒有分支頂端可比對）或查詢頂端失敗時回傳 null，
+     *         呼叫端照常產生報表即可，錯誤會在取得資料時回報
+     */
+    public String resolve(String source, String repoUrl, String username, String password,
+                          LocalDateTime effdate, LocalDateTime expdate, List<String> in_branches, String format) {
+        if (!reportCache.isEnabled()) {
+            return null;
+        }
+        try {
+            Map<String, String> tips;
+            if ("gitlab".equalsIgnoreCase(source)) {
+                tips = gitLabReportSource.branchTips(repoUrl, password, in_branches);
+            } else if ("clone".equalsIgnoreCase(source)) {
+                tips = new TreeMap<>();
+                for (Map.Entry<String, ObjectId> tip : gitService.remoteBranchTips(repoUrl, username, password, in_branches).entrySet()) {
+                    tips.put(tip.getKey(), tip.getValue().getName());
+                }
+            } else {
+                return null;
+            }
+            return ReportCache.key(source, repoUrl, tips, effdate, expdate, in_branches, format);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.gitsync.service;
+
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 合併相同 key 的並行請求：同一時間只有第一個呼叫端實際執行，其餘呼叫端等待並取得同一個結果（或同一個例外）。
+ * 執行完成後立即移除，之後的請求會重新執行，不作為快取使用；因此結果必須是唯讀、可跨執行緒共用的物件。
+ */
+public class SingleFlight<V> {
+
+    private final Map<String, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param key 請求 key，建議以 {@link #key} 產生
+     * @param loader 實際執行的工作，只在沒有相同 key 執行中時呼叫
+     */
+    public V execute(String key, Callable<V> loader) throws Exception {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return await(existing);
+        }
+        executed.incrementAndGet();
+        try {
+            V value = loader.call();
+            flight.complete(value);
+            return value;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(executed.get(), coalesced.get(), inFlight.size());
+    }
+
+    /**
+     * 組出請求 key：各部分依序串接後取 SHA-256，key 中不保留密碼等明文
+     */
+    public static String key(Object... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (Object part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) throws Exception {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待相同請求的結果時被中斷");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    public static class Stats {
+        private final long executed;
+        private final long coalesced;
+        private final int inFlight;
+
+        Stats(long executed, long coalesced, int inFlight) {
+            this.executed = executed;
+            this.coalesced = coalesced;
+            this.inFlight = inFlight;
+        }
+
+        /** 實際執行的次數 */
+        public long getExecuted() {
+            return executed;
+        }
+
+        /** 併入其他執行中請求的次數 */
+        public long getCoalesced() {
+            return coalesced;
+        }
+
+        /** 目前執行中的 key 數 */
+        public int getInFlight() {
+            return inFlight;
+        }
+    }
+}
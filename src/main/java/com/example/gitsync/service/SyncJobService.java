@@ -0,0 +1,307 @@
+package com.example.gitsync.service;
+
+import com.example.gitsync.model.GitCommit;
+import com.example.gitsync.model.SyncJob;
+import com.example.gitsync.repository.GitCommitRepository;
+import com.example.gitsync.repository.SyncJobRepository;
+import com.example.gitsync.repository.WorkLogBulkWriter;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 背景同步工作：
+ * 1. 提交後立即回傳工作 id，同步在固定大小的執行緒池執行，佇列滿時拒絕新工作。
+ * 2. 執行中的進度保存在記憶體，查詢時與資料庫紀錄合併回傳。
+ * 3. 取消採協作方式，不中斷執行緒，避免中斷 JGit / JDBC 的 I/O。
+ * 4. 工作紀錄寫入 SyncJob 表；重新啟動時，未完成的工作標記為失敗。
+ * 5. 相同倉庫、區間、分支與帳密的分支同步已在佇列或執行中時，直接回傳該工作，不重複 fetch。
+ */
+@Service
+public class SyncJobService {
+
+    private final GitService gitService;
+    private final GitCommitRepository gitCommitRepository;
+    private final SyncJobRepository syncJobRepository;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, RunningJob> runningJobs = new ConcurrentHashMap<>();
+    /** 分支同步的請求 key → 執行中的工作 id */
+    private final Map<String, String> activeBranchSyncs = new ConcurrentHashMap<>();
+    private final AtomicLong branchSyncsExecuted = new AtomicLong();
+    private final AtomicLong branchSyncsCoalesced = new AtomicLong();
+
+    public SyncJobService(GitService gitService, GitCommitRepository gitCommitRepository, SyncJobRepository syncJobRepository,
+                          @Value("${gitsync.job.threads:2}") int threads,
+                          @Value("${gitsync.job.queue-capacity:20}") int queueCapacity) {
+        this.gitService = gitService;
+        this.gitCommitRepository = gitCommitRepository;
+        this.syncJobRepository = syncJobRepository;
+        this.executor = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+            Thread thread = new Thread(runnable, "sync-job");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 上次執行時未完成的工作已不可能繼續，標記為失敗
+     */
+    @PostConstruct
+    public void markInterruptedJobs() {
+        List<SyncJob> unfinished = syncJobRepository.findByStatusIn(Arrays.asList(SyncJob.STATUS_QUEUED, SyncJob.STATUS_RUNNING));
+        for (SyncJob job : unfinished) {
+            job.setStatus(SyncJob.STATUS_FAILED);
+            job.setErrorMessage("服務重新啟動，工作中斷");
+            job.setEndDateTime(LocalDateTime.now());
+        }
+        syncJobRepository.saveAll(unfinished);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runningJobs.values().forEach(running -> running.progress.cancel());
+        executor.shutdown();
+    }
+
+    /**
+     * 提交分支區間增量同步（GitService.syncBranchesIncrementally）；相同的同步尚未完成時回傳該工作
+     * @throws RejectedExecutionException 佇列已滿
+     */
+    public synchronized SyncJob submitBranchSync(String repoUrl, String username, String password, LocalDateTime effdate,
+                                                 LocalDateTime expdate, List<String> branches) {
+        String key = SingleFlight.key(repoUrl.trim(), username, password, effdate, expdate,
+                branches != null ? new TreeSet<>(branches) : "*");
+        String activeJobId = activeBranchSyncs.get(key);
+        RunningJob active = activeJobId != null ? runningJobs.get(activeJobId) : null;
+        if (active != null) {
+            branchSyncsCoalesced.incrementAndGet();
+            return active.snapshot();
+        }
+        SyncJob job = newJob(SyncJob.TYPE_BRANCHES, repoUrl, branches);
+        job.setEffdate(effdate);
+        job.setExpdate(expdate);
+        activeBranchSyncs.put(key, job.getJobId());
+        SyncJob submitted = submit(job, key, progress -> gitService.syncBranchesIncrementally(repoUrl, username, password, effdate, expdate, branches, progress));
+        branchSyncsExecuted.incrementAndGet();
+        return submitted;
+    }
+
+    /**
+     * 分支同步的請求合併統計
+     */
+    public SingleFlight.Stats coalescingStats() {
+        return new SingleFlight.Stats(branchSyncsExecuted.get(), branchSyncsCoalesced.get(), activeBranchSyncs.size());
+    }
+
+    /**
+     * 提交 /api/git/sync 的同步流程：預設分支寫入 GitCommit，指定分支寫入 WorkLog
+     * @throws RejectedExecutionException 佇列已滿
+     */
+    public SyncJob submitCommitSync(String repoUrl, String username, String password, String branch) {
+        SyncJob job = newJob(SyncJob.TYPE_COMMITS, repoUrl, branch != null ? Arrays.asList(branch) : null);
+        return submit(job, progress -> {
+            progress.setPhase(SyncProgress.PHASE_FETCHING);
+            List<GitCommit> commits = gitService.fetchCommits(repoUrl, username, password);
+            progress.checkCancelled();
+            progress.setPhase(SyncProgress.PHASE_WRITING);
+            gitCommitRepository.saveAll(commits);
+            progress.checkCancelled();
+            progress.setPhase(SyncProgress.PHASE_WALKING);
+            List<RevCommit> rcommits = gitService.fetchAllCommits(repoUrl, username, password, branch);
+            progress.addCommitsWalked(rcommits.size());
+            progress.checkCancelled();
+            progress.setPhase(SyncProgress.PHASE_WRITING);
+            WorkLogBulkWriter.UpsertResult result = gitService.syncCommitsToDatabase(rcommits);
+            progress.addRowsWritten(result.getTotal());
+            progress.setPhase(SyncProgress.PHASE_DONE);
+            return result;
+        });
+    }
+
+    /**
+     * 查詢工作；執行中的工作會帶入目前進度
+     */
+    public Optional<SyncJob> find(String jobId) {
+        RunningJob running = runningJobs.get(jobId);
+        if (running != null) {
+            return Optional.of(running.snapshot());
+        }
+        return syncJobRepository.findById(jobId);
+    }
+
+    /**
+     * 最近 50 筆工作（新到舊），執行中的工作會帶入目前進度
+     */
+    public List<SyncJob> recent() {
+        List<SyncJob> jobs = syncJobRepository.findTop50ByOrderByCreateDateTimeDesc();
+        jobs.replaceAll(job -> {
+            RunningJob running = runningJobs.get(job.getJobId());
+            return running != null ? running.snapshot() : job;
+        });
+        return jobs;
+    }
+
+    /**
+     * 要求取消工作。排隊中的工作直接取消；執行中的工作於目前步驟結束後停止。
+     * @return 工作存在且尚未結束時回傳 true
+     */
+    public boolean cancel(String jobId) {
+        RunningJob running = runningJobs.get(jobId);
+        if (running == null) {
+            return false;
+        }
+        running.progress.cancel();
+        Future<?> future = running.future;
+        if (future != null && future.cancel(false)) {
+            // 尚未開始執行
+            finish(running, SyncJob.STATUS_CANCELLED, null, null);
+        }
+        return true;
+    }
+
+    private SyncJob newJob(String jobType, String repoUrl, List<String> branches) {
+        SyncJob job = new SyncJob();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setJobType(jobType);
+        job.setGitUrl(repoUrl);
+        job.setBranchNames(branches != null ? String.join(",", branches) : null);
+        job.setStatus(SyncJob.STATUS_QUEUED);
+        job.setPhase(SyncProgress.PHASE_QUEUED);
+        job.setCreateDateTime(LocalDateTime.now());
+        return job;
+    }
+
+    private SyncJob submit(SyncJob job, JobTask task) {
+        return submit(job, null, task);
+    }
+
+    /**
+     * @param coalesceKey 分支同步的請求 key，工作結束時自 activeBranchSyncs 移除；null 表示不合併
+     */
+    private SyncJob submit(SyncJob job, String coalesceKey, JobTask task) {
+        syncJobRepository.save(job);
+        RunningJob running = new RunningJob(job, coalesceKey);
+        runningJobs.put(job.getJobId(), running);
+        try {
+            running.future = executor.submit(() -> run(running, task));
+        } catch (RejectedExecutionException e) {
+            finish(running, SyncJob.STATUS_FAILED, null, "同步工作佇列已滿");
+            throw e;
+        }
+        return running.snapshot();
+    }
+
+    private void run(RunningJob running, JobTask task) {
+        if (running.progress.isCancelled()) {
+            finish(running, SyncJob.STATUS_CANCELLED, null, null);
+            return;
+        }
+        synchronized (running) {
+            running.job.setStatus(SyncJob.STATUS_RUNNING);
+            running.job.setStartDateTime(LocalDateTime.now());
+        }
+        syncJobRepository.save(running.snapshot());
+        try {
+            WorkLogBulkWriter.UpsertResult result = task.run(running.progress);
+            finish(running, SyncJob.STATUS_SUCCEEDED, result, null);
+        } catch (CancellationException e) {
+            finish(running, SyncJob.STATUS_CANCELLED, null, null);
+        } catch (Exception e) {
+            // JGit fetch 被取消時會以 TransportException 結束
+            String status = running.progress.isCancelled() ? SyncJob.STATUS_CANCELLED : SyncJob.STATUS_FAILED;
+            finish(running, status, null, e.getMessage());
+        }
+    }
+
+    private void finish(RunningJob running, String status, WorkLogBulkWriter.UpsertResult result, String errorMessage) {
+        SyncJob snapshot;
+        synchronized (running) {
+            if (running.finished) {
+                return;
+            }
+            running.finished = true;
+            running.job.setStatus(status);
+            if (result != null) {
+                running.job.setRowsInserted(result.getInserted());
+                running.job.setRowsUpdated(result.getUpdated());
+            }
+            if (errorMessage != null) {
+                running.job.setErrorMessage(errorMessage.length() > 1000 ? errorMessage.substring(0, 1000) : errorMessage);
+            }
+            running.job.setEndDateTime(LocalDateTime.now());
+            snapshot = running.snapshot();
+        }
+        try {
+            syncJobRepository.save(snapshot);
+        } finally {
+            runningJobs.remove(running.job.getJobId());
+            if (running.coalesceKey != null) {
+                activeBranchSyncs.remove(running.coalesceKey, running.job.getJobId());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface JobTask {
+        WorkLogBulkWriter.UpsertResult run(SyncProgress progress) throws Exception;
+    }
+
+    private static class RunningJob {
+        final SyncJob job;
+        final String coalesceKey;
+        final SyncProgress progress = new SyncProgress();
+        volatile Future<?> future;
+        boolean finished;
+
+        RunningJob(SyncJob job, String coalesceKey) {
+            this.job = job;
+            this.coalesceKey = coalesceKey;
+        }
+
+        /**
+         * 複製工作紀錄並帶入目前進度
+         */
+        synchronized SyncJob snapshot() {
+            SyncJob copy = new SyncJob();
+            copy.setJobId(job.getJobId());
+            copy.setJobType(job.getJobType());
+            copy.setGitUrl(job.getGitUrl());
+            copy.setBranchNames(job.getBranchNames());
+            copy.setEffdate(job.getEffdate());
+            copy.setExpdate(job.getExpdate());
+            copy.setStatus(job.getStatus());
+            copy.setPhase(progress.getPhase());
+            copy.setFetchTask(progress.getFetchTask());
+            copy.setFetchDone(progress.getFetchDone());
+            copy.setFetchTotal(progress.getFetchTotal());
+            copy.setCommitsWalked(progress.getCommitsWalked());
+            copy.setRowsWritten(progress.getRowsWritten());
+            copy.setRowsInserted(job.getRowsInserted());
+            copy.setRowsUpdated(job.getRowsUpdated());
+            copy.setErrorMessage(job.getErrorMessage());
+            copy.setCreateDateTime(job.getCreateDateTime());
+            copy.setStartDateTime(job.getStartDateTime());
+            copy.setEndDateTime(job.getEndDateTime());
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.gitsync.service;
+
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 同步進度：目前階段、fetch 進度（由 JGit 回報）、已走訪 commit 數、已寫入筆數。
+ * 由執行同步的執行緒更新，查詢進度的執行緒讀取。
+ * 取消採協作方式：fetch 期間由 JGit 透過 isCancelled 中止，其餘階段於分支之間檢查。
+ */
+public class SyncProgress implements ProgressMonitor {
+
+    public static final String PHASE_QUEUED = "QUEUED";
+    public static final String PHASE_LISTING = "LISTING_BRANCHES";
+    public static final String PHASE_FETCHING = "FETCHING_OBJECTS";
+    public static final String PHASE_WALKING = "WALKING_COMMITS";
+    public static final String PHASE_WRITING = "WRITING_ROWS";
+    public static final String PHASE_DONE = "DONE";
+
+    private volatile String phase = PHASE_QUEUED;
+    private volatile String fetchTask;
+    private final AtomicInteger fetchDone = new AtomicInteger();
+    private volatile int fetchTotal;
+    private final AtomicLong commitsWalked = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private volatile boolean cancelled;
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public String getFetchTask() {
+        return fetchTask;
+    }
+
+    public int getFetchDone() {
+        return fetchDone.get();
+    }
+
+    public int getFetchTotal() {
+        return fetchTotal;
+    }
+
+    public long getCommitsWalked() {
+        return commitsWalked.get();
+    }
+
+    public void addCommitsWalked(long count) {
+        commitsWalked.addAndGet(count);
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    public void addRowsWritten(long count) {
+        rowsWritten.addAndGet(count);
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 已要求取消時丟出 CancellationException，於各階段之間呼叫
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("同步工作已取消");
+        }
+    }
+
+    @Override
+    public void start(int totalTasks) {
+    }
+
+    @Override
+    public void beginTask(String title, int totalWork) {
+        fetchTask = title;
+        fetchTotal = totalWork;
+        fetchDone.set(0);
+    }
+
+    @Override
+    public void update(int completed) {
+        fetchDone.addAndGet(completed);
+    }
+
+    @Override
+    public void endTask() {
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.gitsync.service;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 單次請求走訪時可保留的 commit 數與估計大小；超過時丟出 {@link WalkBudgetExceededException} 中止走訪，
+ * 避免單一請求（例如完整歷史的報告）耗盡 JVM 記憶體。
+ * 平行走訪的各 worker 共用同一個 budget。
+ */
+public class WalkBudget {
+
+    /** RevCommit 物件本身、父節點陣列與清單參照的估計大小（不含 commit 內容） */
+    private static final int COMMIT_OVERHEAD_BYTES = 128;
+
+    private final long maxCommits;
+    private final long maxBytes;
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * @param maxCommits commit 數上限，0 表示不限制
+     * @param maxBytes 估計大小上限，0 表示不限制
+     */
+    public WalkBudget(long maxCommits, long maxBytes) {
+        this.maxCommits = maxCommits;
+        this.maxBytes = maxBytes;
+    }
+
+    public static WalkBudget unlimited() {
+        return new WalkBudget(0, 0);
+    }
+
+    /**
+     * 記錄一個要保留的 commit
+     * @throws WalkBudgetExceededException 超過上限
+     */
+    public void charge(RevCommit commit) throws WalkBudgetExceededException {
+        byte[] raw = commit.getRawBuffer();
+        long size = COMMIT_OVERHEAD_BYTES + (raw != null ? raw.length : 0);
+        long totalCommits = commits.incrementAndGet();
+        long totalBytes = bytes.addAndGet(size);
+        if (maxCommits > 0 && totalCommits > maxCommits) {
+            throw new WalkBudgetExceededException("commit 數超過單次請求上限 " + maxCommits + "，請縮小日期區間或指定分支");
+        }
+        if (maxBytes > 0 && totalBytes > maxBytes) {
+            throw new WalkBudgetExceededException("commit 資料超過單次請求上限 " + (maxBytes / 1024 / 1024) + " MB，請縮小日期區間或指定分支");
+        }
+    }
+
+    /**
+     * 記錄一個已走訪但不保留內容的 commit（串流走訪）：只計入 RevWalk 為去除重複而保留的 commit 物件
+     * @throws WalkBudgetExceededException 超過上限
+     */
+    public void chargeVisited() throws WalkBudgetExceededException {
+        long totalCommits = commits.incrementAndGet();
+        long totalBytes = bytes.addAndGet(COMMIT_OVERHEAD_BYTES);
+        if (maxCommits > 0 && totalCommits > maxCommits) {
+            throw new WalkBudgetExceededException("走訪的 commit 數超過單次請求上限 " + maxCommits + "，請縮小日期區間或指定分支");
+        }
+        if (maxBytes > 0 && totalBytes > maxBytes) {
+            throw new WalkBudgetExceededException("走訪的 commit 超過單次請求上限 " + (maxBytes / 1024 / 1024) + " MB，請縮小日期區間或指定分支");
+        }
+    }
+
+    public long getCommits() {
+        return commits.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+}
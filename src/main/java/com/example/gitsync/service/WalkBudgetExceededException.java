@@ -0,0 +1,15 @@
+package com.example.gitsync.service;
+
+import java.io.IOException;
+
+/**
+ * 單次請求保留的 commit 數或大小超過上限，走訪已中止
+ */
+public class WalkBudgetExceededException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public WalkBudgetExceededException(String message) {
+        super(message);
+    }
+}
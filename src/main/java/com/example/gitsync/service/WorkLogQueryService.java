@@ -0,0 +1,173 @@
+package com.example.gitsync.service;
+
+import com.example.gitsync.model.WorkLog;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * WorkLog 大量查詢：
+ * 1. keyset 分頁：依 (CommitDateTime, CommitHash) 由新到舊排序，以上一頁最後一筆當游標，不用 OFFSET 也不做 count。
+ *    CommitDateTime 為 NULL 的資料排在最後（SQL Server / H2 的 DESC 排序），游標與條件都另外處理 NULL。
+ * 2. 串流：以 JPA Stream 逐筆讀取並交給呼叫端寫出，讀過的 entity 立即 detach，記憶體用量與筆數無關。
+ */
+@Service
+public class WorkLogQueryService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final int maxPageSize;
+    private final int streamFetchSize;
+
+    public WorkLogQueryService(@Value("${gitsync.search.max-page-size:500}") int maxPageSize,
+                               @Value("${gitsync.search.stream-fetch-size:500}") int streamFetchSize) {
+        this.maxPageSize = maxPageSize;
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    /**
+     * 取得一頁資料
+     * @param cursor 上一頁回傳的 nextCursor，null 表示第一頁
+     * @param size 每頁筆數，超過上限時以上限為準
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage searchPage(Specification<WorkLog> spec, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        Cursor after = cursor != null && !cursor.isEmpty() ? Cursor.decode(cursor) : null;
+        // 多取一筆判斷是否還有下一頁
+        List<WorkLog> rows = entityManager.createQuery(buildQuery(spec, after))
+                .setMaxResults(pageSize + 1)
+                .getResultList();
+        String nextCursor = null;
+        if (rows.size() > pageSize) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+            WorkLog last = rows.get(pageSize - 1);
+            nextCursor = new Cursor(last.getCommitDateTime(), last.getCommitHash()).encode();
+        }
+        return new KeysetPage(rows, nextCursor);
+    }
+
+    /**
+     * 依相同排序逐筆讀取所有符合條件的資料。
+     * 交易在整個走訪期間保持開啟，呼叫端需在 consumer 內把資料寫出，不可保留 entity。
+     */
+    @Transactional(readOnly = true)
+    public long stream(Specification<WorkLog> spec, RowConsumer consumer) throws IOException {
+        long count = 0;
+        try (Stream<WorkLog> rows = entityManager.createQuery(buildQuery(spec, null))
+                .setHint(QueryHints.HINT_FETCH_SIZE, streamFetchSize)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream()) {
+            for (WorkLog log : (Iterable<WorkLog>) rows::iterator) {
+                consumer.accept(log);
+                entityManager.detach(log);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private CriteriaQuery<WorkLog> buildQuery(Specification<WorkLog> spec, Cursor after) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<WorkLog> query = cb.createQuery(WorkLog.class);
+        Root<WorkLog> root = query.from(WorkLog.class);
+        Path<LocalDateTime> commitDateTime = root.get("commitDateTime");
+        Path<String> commitHash = root.get("commitHash");
+        List<Predicate> predicates = new ArrayList<>();
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                predicates.add(predicate);
+            }
+        }
+        if (after != null && after.commitDateTime != null) {
+            // (CommitDateTime, CommitHash) < 游標，或 CommitDateTime 為 NULL（排在所有有時間的資料之後）
+            predicates.add(cb.or(
+                    cb.lessThan(commitDateTime, after.commitDateTime),
+                    cb.and(cb.equal(commitDateTime, after.commitDateTime), cb.lessThan(commitHash, after.commitHash)),
+                    cb.isNull(commitDateTime)));
+        } else if (after != null) {
+            // 游標已在 CommitDateTime 為 NULL 的區段，只剩同區段中 CommitHash 較小的資料
+            predicates.add(cb.and(cb.isNull(commitDateTime), cb.lessThan(commitHash, after.commitHash)));
+        }
+        query.select(root)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(cb.desc(commitDateTime), cb.desc(commitHash));
+        return query;
+    }
+
+    @FunctionalInterface
+    public interface RowConsumer {
+        void accept(WorkLog log) throws IOException;
+    }
+
+    public static class KeysetPage {
+        private final List<WorkLog> items;
+        private final String nextCursor;
+
+        KeysetPage(List<WorkLog> items, String nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<WorkLog> getItems() {
+            return items;
+        }
+
+        /** 下一頁的游標，null 表示已是最後一頁 */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * 游標內容為 CommitDateTime|CommitHash，以 URL-safe Base64 編碼；CommitDateTime 為 NULL 時留空
+     */
+    static class Cursor {
+        final LocalDateTime commitDateTime;
+        final String commitHash;
+
+        Cursor(LocalDateTime commitDateTime, String commitHash) {
+            this.commitDateTime = commitDateTime;
+            this.commitHash = commitHash;
+        }
+
+        String encode() {
+            String raw = (commitDateTime != null ? commitDateTime.toString() : "") + "|" + commitHash;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int sep = raw.indexOf('|');
+                if (sep < 0) {
+                    throw new IllegalArgumentException("游標格式錯誤");
+                }
+                String dateTime = raw.substring(0, sep);
+                return new Cursor(dateTime.isEmpty() ? null : LocalDateTime.parse(dateTime), raw.substring(sep + 1));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("游標格式錯誤", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.gitsync.service;
+
+import com.example.gitsync.model.GitCommit;
+import com.example.gitsync.model.WorkLog;
+import com.example.gitsync.repository.WorkLogRepository;
+import com.example.gitsync.repository.WorkLogSpecifications;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 由已同步的 WorkLog 產生報表資料，不需連線到 Git 倉庫。
+ * 資料新舊取決於上次同步（手動或排程）的時間。
+ */
+@Component
+public class WorkLogReportSource {
+
+    private final WorkLogRepository workLogRepository;
+
+    public WorkLogReportSource(WorkLogRepository workLogRepository) {
+        this.workLogRepository = workLogRepository;
+    }
+
+    /**
+     * @param in_branches 分支名稱（不含 origin/ 前綴），null 或空清單表示已同步的所有分支
+     * @return key 為 refs/remotes/origin/{branch}，與 clone 來源相同
+     */
+    public Map<String, List<GitCommit>> fetchCommitsByDateRange(String repoUrl, LocalDateTime effdate, LocalDateTime expdate,
+                                                                List<String> in_branches) {
+        List<String> branchNames = null;
+        if (in_branches != null && !in_branches.isEmpty()) {
+            branchNames = new ArrayList<>();
+            for (String branch : in_branches) {
+                branchNames.add(GitMirrorStore.REMOTE_BRANCH_PREFIX + BranchSelector.simpleBranchName(branch));
+            }
+        }
+        Specification<WorkLog> spec = Specification.where(WorkLogSpecifications.gitUrlEquals(repoUrl))
+                .and(WorkLogSpecifications.branchNameIn(branchNames))
+                .and(WorkLogSpecifications.commitDateTimeBetween(effdate, expdate));
+        Map<String, List<GitCommit>> branchCommits = new LinkedHashMap<>();
+        for (WorkLog log : workLogRepository.findAll(spec, Sort.by(Sort.Direction.DESC, "commitDateTime"))) {
+            GitCommit commit = new GitCommit();
+            commit.setCommitId(log.getCommitHash());
+            commit.setAuthor(log.getAuthorName());
+            commit.setMessage(log.getMessage());
+            commit.setCommitDate(log.getCommitDateTime());
+            branchCommits.computeIfAbsent(log.getBranchName(), k -> new ArrayList<>()).add(commit);
+        }
+        return branchCommits;
+    }
+}
@@ -1,66 +1,138 @@
 package com.example.gitsync.util;
 
-import org.eclipse.jgit.revwalk.RevCommit;
+import com.example.gitsync.service.BranchSelector;
+import com.example.gitsync.service.CommitTable;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
-import java.io.ByteArrayOutputStream;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import java.io.OutputStream;
 
 public class ExcelReportUtil {
-    public static ByteArrayOutputStream generateExcel(Map<String, List<RevCommit>> branchCommitsMap) throws Exception {
-        Workbook workbook = new XSSFWorkbook();
-        Sheet sheet = workbook.createSheet("CTBC 人天報告");
-        Row header = sheet.createRow(0);
-        header.createCell(0).setCellValue("分支");
-        header.createCell(1).setCellValue("commit");
-        header.createCell(2).setCellValue("作者");
-        header.createCell(3).setCellValue("日期");
-        header.createCell(4).setCellValue("人天");
-        int rowIdx = 1;
-        int totalDays = 0;
-        // 分組：分支+作者+日期
-        Map<String, Map<String, Map<java.time.LocalDate, List<RevCommit>>>> groupMap = new HashMap<>();
-        for (Map.Entry<String, List<RevCommit>> entry : branchCommitsMap.entrySet()) {
-            String branch = entry.getKey();
-            for (RevCommit commit : entry.getValue()) {
-                String author = commit.getAuthorIdent().getName();
-                java.time.LocalDate date = java.time.LocalDateTime.ofInstant(commit.getAuthorIdent().getWhen().toInstant(), java.time.ZoneId.systemDefault()).toLocalDate();
-                groupMap.computeIfAbsent(branch, k -> new HashMap<>())
-                        .computeIfAbsent(author, k -> new HashMap<>())
-                        .computeIfAbsent(date, k -> new ArrayList<>())
-                        .add(commit);
+    /** SXSSF 保留在記憶體中的列數 */
+    private static final int ROW_WINDOW = 200;
+
+    /**
+     * 以 SXSSF 串流寫出：記憶體中只保留最近 ROW_WINDOW 列，其餘列寫入壓縮暫存檔，最後直接寫到 out。
+     * 以分支+作者+日期分組，每組一列；多個倉庫合併的表另以倉庫分組，第一欄顯示倉庫。
+     * @param sheetPerBranch true 時每個分支（多個倉庫時為每個倉庫的每個分支）一個工作表，各自計算總人天
+     */
+    public static void writeExcel(CommitTable commits, OutputStream out, boolean sheetPerBranch) throws Exception {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            boolean withRepo = commits.hasRepos();
+            SheetWriter writer = sheetPerBranch ? null : new SheetWriter(workbook, "CTBC 人天報告", withRepo);
+            for (int branch = 0; branch < commits.branchCount(); branch++) {
+                String branchName = commits.branchName(branch);
+                String repoName = commits.repoName(branch);
+                if (sheetPerBranch) {
+                    if (writer != null) {
+                        writer.finish();
+                    }
+                    String sheetName = BranchSelector.simpleBranchName(branchName);
+                    writer = new SheetWriter(workbook, withRepo ? repoName + " " + sheetName : sheetName, withRepo);
+                }
+                SheetWriter sheet = writer;
+                StringBuilder commitStr = new StringBuilder();
+                commits.forEachAuthorDay(branch, (author, date, rows) -> {
+                    commitStr.setLength(0);
+                    for (int i = 0; i < rows.length; i++) {
+                        if (i > 0) {
+                            commitStr.append('\n');
+                        }
+                        commitStr.append(commits.shortMessage(rows[i])).append(" [").append(commits.shortHash(rows[i])).append("]");
+                    }
+                    sheet.addRow(repoName, branchName, commitStr.toString(), author, date);
+                });
+            }
+            if (writer == null) {
+                // 沒有任何分支時仍輸出空白報表
+                writer = new SheetWriter(workbook, "CTBC 人天報告", withRepo);
             }
+            writer.finish();
+            workbook.write(out);
+        } finally {
+            workbook.close();
+            // 刪除 SXSSF 暫存檔
+            workbook.dispose();
         }
-        for (String branch : groupMap.keySet()) {
-            Map<String, Map<java.time.LocalDate, List<RevCommit>>> authorMap = groupMap.get(branch);
-            for (String author : authorMap.keySet()) {
-                Map<java.time.LocalDate, List<RevCommit>> dateMap = authorMap.get(author);
-                for (java.time.LocalDate date : dateMap.keySet()) {
-                    List<RevCommit> commits = dateMap.get(date);
-                    String commitStr = commits.stream()
-                        .map(c -> c.getShortMessage() + " [" + c.getName().substring(0, 7) + "]")
-                        .collect(java.util.stream.Collectors.joining("\n"));
-                    Row row = sheet.createRow(rowIdx++);
-                    row.createCell(0).setCellValue(branch);
-                    row.createCell(1).setCellValue(commitStr);
-                    row.createCell(2).setCellValue(author);
-                    row.createCell(3).setCellValue(date.toString());
-                    row.createCell(4).setCellValue(1);
-                    totalDays++;
-                }
+    }
+
+    /**
+     * 依序寫入一個工作表；超過 Excel 列數上限時自動接續到新的工作表
+     */
+    private static class SheetWriter {
+        private static final int MAX_DATA_ROWS = SpreadsheetVersion.EXCEL2007.getLastRowIndex() - 1;
+
+        private final SXSSFWorkbook workbook;
+        private final String baseName;
+        /** 第一欄為倉庫，其餘欄位往後移一欄 */
+        private final boolean withRepo;
+        private final int offset;
+        private Sheet sheet;
+        private int rowIdx;
+        private int part = 1;
+        private int totalDays;
+
+        SheetWriter(SXSSFWorkbook workbook, String name, boolean withRepo) {
+            this.workbook = workbook;
+            this.baseName = name;
+            this.withRepo = withRepo;
+            this.offset = withRepo ? 1 : 0;
+            newSheet(name);
+        }
+
+        void addRow(String repo, String branch, String commitStr, String author, java.time.LocalDate date) {
+            if (rowIdx > MAX_DATA_ROWS) {
+                newSheet(baseName + " (" + (++part) + ")");
+            }
+            Row row = sheet.createRow(rowIdx++);
+            if (withRepo) {
+                row.createCell(0).setCellValue(repo);
+            }
+            row.createCell(offset).setCellValue(branch);
+            row.createCell(offset + 1).setCellValue(commitStr);
+            row.createCell(offset + 2).setCellValue(author);
+            row.createCell(offset + 3).setCellValue(date.toString());
+            row.createCell(offset + 4).setCellValue(1);
+            totalDays++;
+        }
+
+        /**
+         * 總人天（跨越多個工作表時寫在最後一個工作表）
+         */
+        void finish() {
+            Row totalRow = sheet.createRow(rowIdx);
+            totalRow.createCell(0).setCellValue("總人天");
+            totalRow.createCell(offset + 4).setCellValue(totalDays);
+        }
+
+        private void newSheet(String name) {
+            sheet = workbook.createSheet(uniqueSheetName(workbook, name));
+            Row header = sheet.createRow(0);
+            if (withRepo) {
+                header.createCell(0).setCellValue("倉庫");
+            }
+            header.createCell(offset).setCellValue("分支");
+            header.createCell(offset + 1).setCellValue("commit");
+            header.createCell(offset + 2).setCellValue("作者");
+            header.createCell(offset + 3).setCellValue("日期");
+            header.createCell(offset + 4).setCellValue("人天");
+            rowIdx = 1;
+        }
+
+        /**
+         * 工作表名稱最長 31 字且不可含 / \ ? * [ ] :，重複時加上序號
+         */
+        private static String uniqueSheetName(Workbook workbook, String name) {
+            String safe = WorkbookUtil.createSafeSheetName(name);
+            String candidate = safe;
+            for (int i = 2; workbook.getSheet(candidate) != null; i++) {
+                String suffix = " (" + i + ")";
+                candidate = safe.substring(0, Math.min(safe.length(), 31 - suffix.length())) + suffix;
             }
+            return candidate;
         }
-        // 總人天
-        Row totalRow = sheet.createRow(rowIdx);
-        totalRow.createCell(0).setCellValue("總人天");
-        totalRow.createCell(4).setCellValue(totalDays);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        workbook.write(out);
-        workbook.close();
-        return out;
     }
 }
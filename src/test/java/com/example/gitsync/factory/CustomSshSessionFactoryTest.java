@@ -0,0 +1,277 @@
+package com.example.gitsync.factory;
+
+import com.example.gitsync.service.GitMirrorStore;
+import org.apache.sshd.common.session.Session;
+import org.apache.sshd.common.session.SessionListener;
+import org.apache.sshd.server.Environment;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.errors.TransportException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.transport.RemoteSession;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.transport.UploadPack;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.util.FS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 以內嵌的 Apache MINA SSHD 驗證 SSH session 連線池：
+ * 重複使用已驗證的 session（不重新交換金鑰）、每台主機的 session 上限、閒置逾時與不同帳密不共用 session。
+ */
+class CustomSshSessionFactoryTest {
+
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    @TempDir
+    Path tempDir;
+
+    private SshServer sshd;
+    private File sourceRepo;
+    private String repoUrl;
+    private final AtomicInteger sessionsCreated = new AtomicInteger();
+    private final AtomicInteger sessionsClosed = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        sourceRepo = tempDir.resolve("source").toFile();
+        try (Git git = Git.init().setDirectory(sourceRepo).setInitialBranch("master").call()) {
+            Files.write(new File(sourceRepo, "README").toPath(), "hello".getBytes());
+            git.add().addFilepattern("README").call();
+            git.commit().setMessage("init").setAuthor("Alice", "alice@example.com").setCommitter("Alice", "alice@example.com").call();
+        }
+
+        sshd = SshServer.setUpDefaultServer();
+        sshd.setHost("127.0.0.1");
+        sshd.setPort(0);
+        sshd.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+        sshd.setPasswordAuthenticator((username, password, session) ->
+                ("git".equals(username) && "pw".equals(password)) || ("other".equals(username) && "pw2".equals(password)));
+        sshd.setCommandFactory((channel, command) -> new UploadPackCommand(command));
+        sshd.addSessionListener(new SessionListener() {
+            @Override
+            public void sessionCreated(Session session) {
+                sessionsCreated.incrementAndGet();
+            }
+
+            @Override
+            public void sessionClosed(Session session) {
+                sessionsClosed.incrementAndGet();
+            }
+        });
+        sshd.start();
+        repoUrl = "ssh://git@127.0.0.1:" + sshd.getPort() + sourceRepo.getAbsolutePath();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        sshd.stop(true);
+    }
+
+    @Test
+    void secondFetchReusesAuthenticatedSession() throws Exception {
+        GitMirrorStore store = new GitMirrorStore(tempDir.resolve("mirrors").toString(), 1024, 4, 300, 5);
+        try {
+            for (int round = 0; round < 3; round++) {
+                assertThat(store.lsRemote(repoUrl, "git", "pw")).containsKey("master");
+                try (GitMirrorStore.MirrorLease lease = store.open(repoUrl, "git", "pw")) {
+                    assertThat(lease.getRepository().exactRef(GitMirrorStore.REMOTE_BRANCH_PREFIX + "master")).isNotNull();
+                }
+            }
+            // ls-remote 與 fetch 共 6 次連線只建立一個 SSH session（只交換一次金鑰、驗證一次）
+            assertThat(sessionsCreated.get()).isEqualTo(1);
+            assertThat(sessionsClosed.get()).isZero();
+        } finally {
+            store.shutdown();
+        }
+        awaitClosed(1);
+    }
+
+    @Test
+    void perHostCapWaitsThenTimesOut() throws Exception {
+        CustomSshSessionFactory factory = new CustomSshSessionFactory(1, 300, 1);
+        try {
+            RemoteSession first = getSession(factory, "git", "pw");
+
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> getSession(factory, "git", "pw"))
+                    .isInstanceOf(TransportException.class)
+                    .hasMessageContaining("上限");
+            assertThat((System.nanoTime() - start) / 1_000_000).isGreaterThanOrEqualTo(900);
+
+            // 歸還後可再取得，且是同一個連線
+            factory.releaseSession(first);
+            RemoteSession second = getSession(factory, "git", "pw");
+            assertThat(sessionsCreated.get()).isEqualTo(1);
+            factory.releaseSession(second);
+        } finally {
+            factory.shutdown();
+        }
+    }
+
+    @Test
+    void waitingRequestGetsSessionReleasedByAnother() throws Exception {
+        CustomSshSessionFactory factory = new CustomSshSessionFactory(1, 300, 5);
+        try {
+            RemoteSession first = getSession(factory, "git", "pw");
+            Thread releaser = new Thread(() -> {
+                sleep(300);
+                factory.releaseSession(first);
+            });
+            releaser.start();
+            RemoteSession second = getSession(factory, "git", "pw");
+            releaser.join();
+            assertThat(sessionsCreated.get()).isEqualTo(1);
+            factory.releaseSession(second);
+        } finally {
+            factory.shutdown();
+        }
+    }
+
+    @Test
+    void idleSessionIsClosedAfterTimeout() throws Exception {
+        CustomSshSessionFactory factory = new CustomSshSessionFactory(4, 1, 5);
+        try {
+            factory.releaseSession(getSession(factory, "git", "pw"));
+            assertThat(sessionsClosed.get()).isZero();
+
+            awaitClosed(1);
+
+            // 閒置 session 已關閉，下一次需要重新建立
+            factory.releaseSession(getSession(factory, "git", "pw"));
+            assertThat(sessionsCreated.get()).isEqualTo(2);
+        } finally {
+            factory.shutdown();
+        }
+    }
+
+    @Test
+    void sessionsAreNotSharedAcrossCredentials() throws Exception {
+        CustomSshSessionFactory factory = new CustomSshSessionFactory(4, 300, 5);
+        try {
+            factory.releaseSession(getSession(factory, "git", "pw"));
+
+            // 錯誤的密碼不能取用已驗證的 session
+            assertThatThrownBy(() -> getSession(factory, "git", "wrong")).isInstanceOf(TransportException.class);
+
+            // 另一個帳號建立自己的 session
+            factory.releaseSession(getSession(factory, "other", "pw2"));
+            int created = sessionsCreated.get();
+            assertThat(created).isGreaterThanOrEqualTo(3);
+
+            // 原帳號仍重複使用原本的 session
+            factory.releaseSession(getSession(factory, "git", "pw"));
+            assertThat(sessionsCreated.get()).isEqualTo(created);
+        } finally {
+            factory.shutdown();
+        }
+    }
+
+    private RemoteSession getSession(CustomSshSessionFactory factory, String username, String password) throws Exception {
+        URIish uri = new URIish(repoUrl).setUser(username);
+        return factory.getSession(uri, new UsernamePasswordCredentialsProvider(username, password), FS.DETECTED, TIMEOUT_MILLIS);
+    }
+
+    private void awaitClosed(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (sessionsClosed.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(100);
+        }
+        assertThat(sessionsClosed.get()).isGreaterThanOrEqualTo(expected);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 在 server 端以 JGit UploadPack 回應 git-upload-pack，不需要系統安裝 git
+     */
+    private static class UploadPackCommand implements Command {
+        private final String command;
+        private InputStream in;
+        private OutputStream out;
+        private OutputStream err;
+        private ExitCallback exitCallback;
+
+        UploadPackCommand(String command) {
+            this.command = command;
+        }
+
+        @Override
+        public void setInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public void setOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void setErrorStream(OutputStream err) {
+            this.err = err;
+        }
+
+        @Override
+        public void setExitCallback(ExitCallback callback) {
+            this.exitCallback = callback;
+        }
+
+        @Override
+        public void start(ChannelSession channel, Environment env) {
+            Thread thread = new Thread(() -> {
+                int exitCode = 0;
+                String message = null;
+                try {
+                    if (!command.startsWith("git-upload-pack ")) {
+                        throw new IllegalArgumentException("unsupported command: " + command);
+                    }
+                    String path = command.substring("git-upload-pack ".length()).replace("'", "");
+                    try (Git git = Git.open(new File(path))) {
+                        Repository repository = git.getRepository();
+                        new UploadPack(repository).upload(in, out, err);
+                    }
+                } catch (Exception e) {
+                    exitCode = 1;
+                    message = e.getMessage();
+                } finally {
+                    try {
+                        out.flush();
+                    } catch (Exception e) {
+                        // 用戶端已關閉 channel
+                    }
+                    exitCallback.onExit(exitCode, message != null ? message : "");
+                }
+            }, "upload-pack");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        @Override
+        public void destroy(ChannelSession channel) {
+            // upload-pack 於用戶端關閉輸入後自行結束
+        }
+    }
+}
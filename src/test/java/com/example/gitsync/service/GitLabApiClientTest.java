@@ -0,0 +1,255 @@
+package com.example.gitsync.service;
+
+import com.example.gitsync.model.GitCommit;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 以本機 stub HTTP server 驗證 GitLabApiClient 的分頁、X-Next-Page、Retry-After 重試、讀取逾時與 ETag 條件式請求
+ */
+class GitLabApiClientTest {
+
+    private static final String PATH = "/api/v4/projects/1/repository/commits";
+
+    private static final int READ_TIMEOUT_MILLIS = 500;
+
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private String commitsUrl;
+    private GitLabApiClient client;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private volatile Handler handler;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(PATH, exchange -> {
+            try {
+                requests.add(exchange.getRequestURI().getQuery());
+                handler.handle(exchange, page(exchange));
+            } finally {
+                exchange.close();
+            }
+        });
+        // 每個請求各自一個執行緒，模擬不回應的請求時不會擋住重試
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        commitsUrl = "http://127.0.0.1:" + server.getAddress().getPort() + PATH;
+        client = new GitLabApiClient(2, 2, 3, 100, 1000, READ_TIMEOUT_MILLIS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void fetchesAllPagesInOrderWhenTotalPagesIsKnown() throws IOException {
+        handler = (exchange, page) -> {
+            exchange.getResponseHeaders().add("X-Total-Pages", "4");
+            respond(exchange, 200, commits("p" + page + "a", "p" + page + "b"));
+        };
+
+        List<GitCommit> commits = client.listCommits(commitsUrl, "token", null, null, "dev");
+
+        assertThat(ids(commits)).containsExactly("p1a", "p1b", "p2a", "p2b", "p3a", "p3b", "p4a", "p4b");
+        assertThat(requests).hasSize(4).allMatch(query -> query.contains("ref_name=dev") && query.contains("per_page=100"));
+    }
+
+    @Test
+    void followsNextPageHeaderWhenTotalPagesIsMissing() throws IOException {
+        handler = (exchange, page) -> {
+            if (page < 3) {
+                exchange.getResponseHeaders().add("X-Next-Page", String.valueOf(page + 1));
+            } else {
+                // 最後一頁 GitLab 回傳空的 X-Next-Page
+                exchange.getResponseHeaders().add("X-Next-Page", "");
+            }
+            respond(exchange, 200, commits("p" + page));
+        };
+
+        List<GitCommit> commits = client.listCommits(commitsUrl, "token", null, null, null);
+
+        assertThat(ids(commits)).containsExactly("p1", "p2", "p3");
+        assertThat(requests).hasSize(3);
+    }
+
+    @Test
+    void retriesAfterTooManyRequestsAndServiceUnavailable() throws IOException {
+        AtomicInteger calls = new AtomicInteger();
+        handler = (exchange, page) -> {
+            int call = calls.incrementAndGet();
+            if (call <= 2) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                respond(exchange, call == 1 ? 429 : 503, "{\"message\":\"slow down\"}");
+                return;
+            }
+            respond(exchange, 200, commits("c1"));
+        };
+
+        long start = System.nanoTime();
+        List<GitCommit> commits = client.listCommits(commitsUrl, "token", null, null, null);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(ids(commits)).containsExactly("c1");
+        assertThat(calls.get()).isEqualTo(3);
+        // 兩次各依 Retry-After 等待 1 秒
+        assertThat(elapsedMillis).isGreaterThanOrEqualTo(1900);
+    }
+
+    @Test
+    void failsAfterMaxRetries() {
+        handler = (exchange, page) -> {
+            exchange.getResponseHeaders().add("Retry-After", "0");
+            respond(exchange, 429, "{}");
+        };
+
+        assertThatThrownBy(() -> client.listCommits(commitsUrl, "token", null, null, null))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("429");
+        // 第一次請求加上 3 次重試
+        assertThat(requests).hasSize(4);
+    }
+
+    @Test
+    void retriesWhenServerStopsResponding() throws IOException {
+        AtomicInteger calls = new AtomicInteger();
+        handler = (exchange, page) -> {
+            if (calls.incrementAndGet() == 1) {
+                // 超過讀取逾時仍不回應
+                sleep(READ_TIMEOUT_MILLIS * 4);
+            }
+            respond(exchange, 200, commits("c1"));
+        };
+
+        assertThat(ids(client.listCommits(commitsUrl, "token", null, null, null))).containsExactly("c1");
+        assertThat(calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    void failsWhenServerNeverResponds() {
+        handler = (exchange, page) -> sleep(READ_TIMEOUT_MILLIS * 2);
+        GitLabApiClient noRetry = new GitLabApiClient(2, 2, 0, 100, 1000, READ_TIMEOUT_MILLIS);
+        try {
+            long start = System.nanoTime();
+            assertThatThrownBy(() -> noRetry.listCommits(commitsUrl, "token", null, null, null))
+                    .isInstanceOf(SocketTimeoutException.class);
+            assertThat((System.nanoTime() - start) / 1_000_000).isLessThan(READ_TIMEOUT_MILLIS * 2);
+        } finally {
+            noRetry.shutdown();
+        }
+    }
+
+    @Test
+    void revalidatesWithETagAndReusesCachedPageOnNotModified() throws IOException {
+        Map<Integer, String> ifNoneMatch = new ConcurrentHashMap<>();
+        AtomicInteger calls = new AtomicInteger();
+        handler = (exchange, page) -> {
+            int call = calls.incrementAndGet();
+            String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (etag != null) {
+                ifNoneMatch.put(call, etag);
+            }
+            if ("\"v1\"".equals(etag)) {
+                respond(exchange, 304, null);
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            respond(exchange, 200, commits("c1", "c2"));
+        };
+
+        List<GitCommit> first = client.listCommits(commitsUrl, "token", null, null, null);
+        List<GitCommit> second = client.listCommits(commitsUrl, "token", null, null, null);
+
+        assertThat(ids(first)).containsExactly("c1", "c2");
+        assertThat(ids(second)).containsExactly("c1", "c2");
+        assertThat(ifNoneMatch).doesNotContainKey(1).containsEntry(2, "\"v1\"");
+    }
+
+    @Test
+    void sendsPrivateToken() throws IOException {
+        List<String> tokens = new CopyOnWriteArrayList<>();
+        handler = (exchange, page) -> {
+            tokens.add(exchange.getRequestHeaders().getFirst("PRIVATE-TOKEN"));
+            respond(exchange, 200, "[]");
+        };
+
+        assertThat(client.listCommits(commitsUrl, "secret", null, null, null)).isEmpty();
+        assertThat(tokens).containsExactly("secret");
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        void handle(HttpExchange exchange, int page) throws IOException;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int page(HttpExchange exchange) {
+        String query = exchange.getRequestURI().getQuery();
+        for (String param : query != null ? query.split("&") : new String[0]) {
+            if (param.startsWith("page=")) {
+                return Integer.parseInt(param.substring("page=".length()));
+            }
+        }
+        return 1;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String commits(String... ids) {
+        List<String> items = new ArrayList<>();
+        for (String id : ids) {
+            items.add("{\"id\":\"" + id + "\",\"author_name\":\"Alice\",\"message\":\"msg " + id + "\","
+                    + "\"committed_date\":\"2025-06-01T10:00:00.000+08:00\",\"parent_ids\":[\"x\"],\"stats\":{\"additions\":1}}");
+        }
+        return "[" + String.join(",", items) + "]";
+    }
+
+    private static List<String> ids(List<GitCommit> commits) {
+        return commits.stream().map(GitCommit::getCommitId).collect(Collectors.toList());
+    }
+}